@@ -17,31 +17,26 @@ package net.ukrcom.cip_gov_ua_getter;
 
 import com.ibm.icu.text.SpoofChecker;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLConnection;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.security.cert.X509Certificate;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.TreeSet;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocketFactory;
@@ -66,16 +61,21 @@ public abstract class AbstractPDFParser {
     private static final DomainValidator DOMAIN_VALIDATOR = DomainValidator.getInstance(true);
     private static final InetAddressValidator IP_VALIDATOR = InetAddressValidator.getInstance();
     private static final SpoofChecker SPOOF_CHECKER = new SpoofChecker.Builder().build();
+    private static final String DOMAIN_CACHE_HEADER = "# sha256=";
 
     protected final Properties properties;
     protected final Path manualDir;
     protected final boolean debug;
     protected String sourceDomain;
     protected String[] serviceSubdomains;
+    protected RetryPolicy retryPolicy;
+    protected final NetworkArchive archive;
 
     public AbstractPDFParser(Properties properties, boolean debug) {
         this.properties = properties;
         this.debug = debug;
+        this.retryPolicy = new RetryPolicy(properties);
+        this.archive = new NetworkArchive(properties);
         String manualDirStr = properties.getProperty("AggressorServices_prescript_to", "./PRESCRIPT").trim();
         this.manualDir = Paths.get(manualDirStr).normalize();
         try {
@@ -105,6 +105,17 @@ public abstract class AbstractPDFParser {
 
     abstract public Set<BlockedDomain> parse();
 
+    /**
+     * Встановлює спільну на весь запуск політику повторів.
+     *
+     * @param policy політика повторів
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public AbstractPDFParser setRetryPolicy(RetryPolicy policy) {
+        this.retryPolicy = policy;
+        return this;
+    }
+
     /**
      * Створює SSLSocketFactory, що довіряє будь-якому сертифікату.
      * Використовується лише per-connection — глобальний стан JVM не змінюється.
@@ -138,49 +149,101 @@ public abstract class AbstractPDFParser {
         }
     }
 
-    protected void downloadPdf(String pdfUrl, String destinationPath) throws IOException {
+    /**
+     * Завантажує PDF умовним запитом. Якщо документ уже є і для нього збережено
+     * метадані, сервер може відповісти 304 — тоді файл не перезавантажується.
+     * Якщо мережа недоступна, використовується наявна копія.
+     *
+     * @param pdfUrl адреса документа
+     * @param destinationPath шлях до локальної копії
+     * @return true, якщо вміст документа змінився з попереднього запуску
+     * @throws IOException якщо документ не вдалося отримати і локальної копії
+     * немає
+     */
+    protected boolean downloadPdf(String pdfUrl, String destinationPath) throws IOException {
         Path destPath = Paths.get(destinationPath);
-        if (Files.exists(destPath)) {
-            logger.debug("PDF already exists: {}", destPath);
-            return;
-        }
         Files.createDirectories(destPath.getParent());
-        Path tempPath = destPath.resolveSibling(destPath.getFileName() + ".tmp");
+        DownloadMetadata previous = DownloadMetadata.load(destPath);
+        // Умовний запит має сенс лише для того самого документа, що лежить на диску
+        DownloadMetadata validator = previous.matches(destPath) && pdfUrl.equals(previous.getUrl()) ? previous : null;
+        int attempts = parseAttempts();
+        DownloadMetadata current;
         try {
-            downloadViaConnection(pdfUrl, tempPath, null);
-        } catch (SSLException e) {
-            logger.warn("SSL verification failed for {}, retrying with per-connection SSL bypass: {}", pdfUrl, e.getMessage());
-            Files.deleteIfExists(tempPath);
-            downloadViaConnection(pdfUrl, tempPath, createTrustAllSslSocketFactory());
+            if (archive.isReplay()) {
+                current = replayPdf(pdfUrl, destPath, validator);
+            } else {
+                current = fetchPdf(pdfUrl, destPath, validator, attempts);
+            }
         } catch (IOException e) {
-            Files.deleteIfExists(tempPath);
+            if (Files.exists(destPath)) {
+                logger.warn("Failed to revalidate {}, using existing copy {}: {}", pdfUrl, destPath, e.getMessage());
+                return false;
+            }
             throw e;
         }
-        try {
-            Files.move(tempPath, destPath, StandardCopyOption.ATOMIC_MOVE);
-        } catch (AtomicMoveNotSupportedException e) {
-            Files.move(tempPath, destPath, StandardCopyOption.REPLACE_EXISTING);
+        if (current == null) {
+            logger.info("PDF not modified since last run: {}", destPath);
+            if (archive.isRecording() && !archive.contains(pdfUrl)) {
+                archive.recordFile(pdfUrl, validatorHeaders(previous), destPath);
+            }
+            return false;
         }
-        logger.debug("Downloaded PDF to: {}", destPath);
+        archive.recordFile(pdfUrl, validatorHeaders(current), destPath);
+        current.store(destPath);
+        boolean changed = !current.getSha256().equals(previous.getSha256());
+        logger.info("Downloaded PDF to {} ({} bytes, {})", destPath, current.getSize(), changed ? "changed" : "content unchanged");
+        return changed;
     }
 
-    private void downloadViaConnection(String pdfUrl, Path destPath, SSLSocketFactory sslSocketFactory) throws IOException {
-        URLConnection connection;
+    private DownloadMetadata fetchPdf(String pdfUrl, Path destPath, DownloadMetadata validator, int attempts)
+            throws IOException {
         try {
-            connection = new URI(pdfUrl).toURL().openConnection();
-        } catch (URISyntaxException e) {
-            throw new IOException("Invalid PDF URL: " + pdfUrl, e);
+            return new ResumableDownload(pdfUrl, destPath, null, retryPolicy, attempts).fetch(validator);
+        } catch (SSLException e) {
+            logger.warn("SSL verification failed for {}, retrying with per-connection SSL bypass: {}", pdfUrl, e.getMessage());
+            return new ResumableDownload(pdfUrl, destPath, createTrustAllSslSocketFactory(), retryPolicy, attempts).fetch(validator);
         }
-        connection.setConnectTimeout(15_000);
-        connection.setReadTimeout(60_000);
-        if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
-            HttpsURLConnection httpsConn = (HttpsURLConnection) connection;
-            httpsConn.setSSLSocketFactory(sslSocketFactory);
-            httpsConn.setHostnameVerifier((hostname, session) -> true);
+    }
+
+    /**
+     * Відтворює завантаження PDF з мережевого архіву, зберігаючи семантику
+     * умовного запиту: якщо валідатор збігається із записаним, повертає null.
+     */
+    private DownloadMetadata replayPdf(String pdfUrl, Path destPath, DownloadMetadata validator) throws IOException {
+        NetworkArchive.Entry entry = archive.lookup(pdfUrl);
+        String etag = entry.getHeader("etag");
+        String lastModified = entry.getHeader("last-modified");
+        if (validator != null && ((etag != null && etag.equals(validator.getEtag()))
+                || (etag == null && lastModified != null && lastModified.equals(validator.getLastModified())))) {
+            return null;
         }
+        long size = archive.replayTo(entry, destPath, 0);
+        return new DownloadMetadata()
+                .setUrl(pdfUrl)
+                .setEtag(etag)
+                .setLastModified(lastModified)
+                .setSize(size)
+                .setSha256(ResumableDownload.sha256Of(destPath));
+    }
 
-        try (InputStream in = connection.getInputStream(); ReadableByteChannel rbc = Channels.newChannel(in); FileOutputStream fos = new FileOutputStream(destPath.toFile())) {
-            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
+    private static Map<String, String> validatorHeaders(DownloadMetadata m) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("content-type", "application/pdf");
+        if (m.getEtag() != null) {
+            headers.put("etag", m.getEtag());
+        }
+        if (m.getLastModified() != null) {
+            headers.put("last-modified", m.getLastModified());
+        }
+        return headers;
+    }
+
+    private int parseAttempts() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("pdf_download_attempts", "3").trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid pdf_download_attempts value, using default: 3");
+            return 3;
         }
     }
 
@@ -188,7 +251,75 @@ public abstract class AbstractPDFParser {
         return text.replaceAll("\n", "");
     }
 
+    /**
+     * Повертає домени з PDF. Якщо вміст документа (за SHA-256 з метаданих) не
+     * змінився з попереднього розбору, домени читаються з кешу
+     * «&lt;ім'я&gt;.domains» без повторного розбору PDF.
+     *
+     * @param filePath шлях до PDF
+     * @return множина доменів
+     */
     protected Set<BlockedDomain> extractDomainsFromPDF(String filePath) {
+        Path pdfPath = Paths.get(filePath);
+        DownloadMetadata metadata = DownloadMetadata.load(pdfPath);
+        String sha256 = metadata.matches(pdfPath) ? metadata.getSha256() : null;
+        if (sha256 != null) {
+            Set<BlockedDomain> cached = readDomainCache(pdfPath, sha256);
+            if (cached != null) {
+                logger.info("PDF {} unchanged, reusing {} parsed domains", pdfPath, cached.size());
+                return cached;
+            }
+        }
+        Set<BlockedDomain> domains = parsePdf(filePath);
+        if (sha256 != null) {
+            writeDomainCache(pdfPath, sha256, domains);
+        }
+        return domains;
+    }
+
+    private static Path domainCacheOf(Path pdfPath) {
+        return pdfPath.resolveSibling(pdfPath.getFileName() + ".domains");
+    }
+
+    private Set<BlockedDomain> readDomainCache(Path pdfPath, String sha256) {
+        Path cache = domainCacheOf(pdfPath);
+        if (!Files.isReadable(cache)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(cache, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(DOMAIN_CACHE_HEADER + sha256)) {
+                return null;
+            }
+            Set<BlockedDomain> domains = new TreeSet<>(new BlockedDomainComparator());
+            LocalDateTime now = LocalDateTime.now();
+            for (String line : lines.subList(1, lines.size())) {
+                if (!line.isBlank()) {
+                    domains.add(new BlockedDomain(line.trim(), true, now));
+                }
+            }
+            return domains;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Failed to read domain cache {}, parsing PDF again: {}", cache, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDomainCache(Path pdfPath, String sha256, Set<BlockedDomain> domains) {
+        Path cache = domainCacheOf(pdfPath);
+        Path tempPath = cache.resolveSibling(cache.getFileName() + ".tmp");
+        List<String> lines = new ArrayList<>(domains.size() + 1);
+        lines.add(DOMAIN_CACHE_HEADER + sha256);
+        domains.forEach(d -> lines.add(d.getDomainName()));
+        try {
+            Files.write(tempPath, lines, StandardCharsets.UTF_8);
+            StreamingDownload.moveAtomically(tempPath, cache);
+        } catch (IOException e) {
+            logger.warn("Failed to write domain cache {}: {}", cache, e.getMessage());
+        }
+    }
+
+    private Set<BlockedDomain> parsePdf(String filePath) {
         Set<BlockedDomain> domains = new TreeSet<>(new BlockedDomainComparator());
 
         try {
@@ -20,6 +20,7 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
@@ -51,11 +52,10 @@ public class AggressorServicesParser extends AbstractPDFParser {
         }
 
         try {
-            String pdfUrl = findPdfUrl(targetUrl);
+            String pdfUrl = retryPolicy.execute("Looking up PDF link", targetUrl, () -> findPdfUrl(targetUrl));
             if (pdfUrl != null) {
                 Path primaryPdfPath = manualDir.resolve(primaryPdfName);
                 downloadPdf(pdfUrl, primaryPdfPath.toString());
-                logger.info("Successfully downloaded PDF to: {}", primaryPdfPath);
                 domains.addAll(extractDomainsFromPDF(primaryPdfPath.toString()));
                 if (debug) {
                     logger.debug("Extracted {} domains from aggressor services PDF", domains.size());
@@ -72,13 +72,18 @@ public class AggressorServicesParser extends AbstractPDFParser {
 
     private String findPdfUrl(String url) throws IOException {
         Document doc;
-        try {
-            doc = Jsoup.connect(url).get();
-        } catch (SSLException e) {
-            logger.warn("SSL verification failed for {}, retrying with per-connection SSL bypass: {}", url, e.getMessage());
-            doc = Jsoup.connect(url)
-                    .sslSocketFactory(createTrustAllSslSocketFactory())
-                    .get();
+        if (archive.isReplay()) {
+            doc = Jsoup.parse(archive.replayText(url), url);
+        } else {
+            try {
+                doc = Jsoup.connect(url).get();
+            } catch (SSLException e) {
+                logger.warn("SSL verification failed for {}, retrying with per-connection SSL bypass: {}", url, e.getMessage());
+                doc = Jsoup.connect(url)
+                        .sslSocketFactory(createTrustAllSslSocketFactory())
+                        .get();
+            }
+            archive.recordText(url, Map.of("content-type", "text/html"), doc.outerHtml());
         }
 
         Element pdfLink = doc.select("a[href$=.pdf]").first();
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.util.List;
+
+/**
+ * Полегшений запис про пост із відповіді API: лише поля, потрібні для
+ * класифікації і завантаження вкладень.
+ *
+ * @author olden
+ */
+public class ArticlePost {
+
+    protected final String id;
+    protected final String date;
+    protected final String status;
+    protected final String title;
+    protected final List<Attachment> attachments;
+
+    /**
+     * Вкладення поста.
+     */
+    public static class Attachment {
+
+        protected final String id;
+        protected final String mimeType;
+        protected final String originalFileName;
+
+        /**
+         * Конструктор класа.
+         *
+         * @param id - ідентифікатор вкладення
+         * @param mimeType - MIME-тип вкладення
+         * @param originalFileName - оригінальне ім'я файлу
+         */
+        public Attachment(String id, String mimeType, String originalFileName) {
+            this.id = id;
+            this.mimeType = mimeType;
+            this.originalFileName = originalFileName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getOriginalFileName() {
+            return originalFileName;
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param id - ідентифікатор поста
+     * @param date - дата поста в текстовому форматі
+     * @param status - статус поста (PUBLISHED тощо)
+     * @param title - заголовок поста
+     * @param attachments - вкладення поста
+     */
+    public ArticlePost(String id, String date, String status, String title, List<Attachment> attachments) {
+        this.id = id;
+        this.date = date;
+        this.status = status;
+        this.title = title;
+        this.attachments = List.copyOf(attachments);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<Attachment> getAttachments() {
+        return attachments;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * «Відмітка рівня» для інкрементного режиму: дата найновішого обробленого
+ * поста та id постів із цією датою. Разом із нею зберігається знімок
+ * останньої події кожного домену з вкладень CIP (дата й статус) — від нього
+ * наступний запуск продовжує, обробляючи лише нові пости. Файли blocked і
+ * парсери aggressor та nkek до знімка не потрапляють і перечитуються під час
+ * кожного запуску, тож домен, прибраний з такого джерела, зникає з
+ * результату.
+ *
+ * Відмітка недійсна, якщо змінилися налаштування, що впливають на розбір
+ * постів (urlArticles, ban_keywords, unban_keywords, blocked,
+ * SERVICE_SUBDOMAINS) або версія правил валідації: тоді виконується повна
+ * синхронізація.
+ *
+ * @author olden
+ */
+public class ArticleWatermark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArticleWatermark.class);
+    private static final String[] FINGERPRINT_KEYS
+            = {"urlArticles", "ban_keywords", "unban_keywords", "blocked", "SERVICE_SUBDOMAINS"};
+
+    private final Path stateFile;
+    private final Path baselineFile;
+    private final String fingerprint;
+    private String storedFingerprint;
+    private LocalDateTime lastDate;
+    private String lastDateRaw;
+    private final Set<String> lastIds = new TreeSet<>();
+
+    private ArticleWatermark(Properties p) {
+        this.stateFile = Paths.get(p.getProperty("incremental_state", "articles.state.properties").trim());
+        this.baselineFile = Paths.get(p.getProperty("incremental_baseline", "articles.state.txt").trim());
+        this.fingerprint = fingerprintOf(p);
+    }
+
+    /**
+     * Завантажує збережену відмітку. Якщо файлу немає чи його не вдалося
+     * прочитати, повертає порожню відмітку.
+     *
+     * @param p - об'єкт властивостей
+     * @return відмітка
+     */
+    public static ArticleWatermark load(Properties p) {
+        ArticleWatermark w = new ArticleWatermark(p);
+        if (!Files.isReadable(w.stateFile)) {
+            return w;
+        }
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(w.stateFile)) {
+            state.load(in);
+        } catch (IOException e) {
+            logger.warn("Failed to read incremental state {}: {}", w.stateFile, e.getMessage());
+            return w;
+        }
+        w.storedFingerprint = state.getProperty("config_sha256");
+        String date = state.getProperty("last_date");
+        if (date != null && !date.isBlank()) {
+            try {
+                w.lastDate = parseDate(date.trim());
+                w.lastDateRaw = date.trim();
+            } catch (DateTimeParseException e) {
+                logger.warn("Invalid last_date in {}, ignoring: {}", w.stateFile, date);
+            }
+        }
+        Arrays.stream(state.getProperty("last_ids", "").split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .forEach(w.lastIds::add);
+        return w;
+    }
+
+    /**
+     * Чи можна продовжити від цієї відмітки: вона є, знімок доменів на місці і
+     * налаштування не змінилися.
+     *
+     * @return true, якщо інкрементний запуск можливий
+     */
+    public boolean isUsable() {
+        if (lastDate == null) {
+            logger.info("No incremental state in {}, running full sync", stateFile);
+            return false;
+        }
+        if (!Files.isReadable(baselineFile)) {
+            logger.warn("Incremental baseline {} is missing, running full sync", baselineFile);
+            return false;
+        }
+        if (!fingerprint.equals(storedFingerprint)) {
+            logger.info("Configuration changed since last run, running full sync");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Чи новий пост відносно відмітки.
+     *
+     * @param post пост із відповіді API
+     * @return true, якщо пост ще не оброблявся
+     */
+    public boolean isNew(ArticlePost post) {
+        if (lastDate == null || post.getDate() == null) {
+            return true;
+        }
+        try {
+            int cmp = parseDate(post.getDate()).compareTo(lastDate);
+            return cmp > 0 || (cmp == 0 && !lastIds.contains(idOf(post)));
+        } catch (DateTimeParseException e) {
+            // Пост із незрозумілою датою краще обробити ще раз, ніж пропустити
+            return true;
+        }
+    }
+
+    /**
+     * Додає до переліку останні події доменів зі знімка попереднього запуску
+     * з їхніми датами й статусами, тож вони зливаються з новими подіями так
+     * само, як при повній синхронізації. Рядок знімка старого формату (лише
+     * ім'я) означає блокування з датою початку епохи.
+     *
+     * @param bo перелік доменів
+     * @return кількість доданих доменів
+     * @throws IOException у разі помилок читання знімка
+     */
+    public int loadBaseline(BlockedObjects bo) throws IOException {
+        int count = 0;
+        for (String line : Files.readAllLines(baselineFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                continue;
+            }
+            try {
+                if (fields.length == 1) {
+                    bo.addBlockedDomainName(new BlockedDomain(fields[0]), "baseline");
+                } else if (fields.length == 3 && (fields[2].equals("+") || fields[2].equals("-"))) {
+                    bo.addBlockedDomainName(new BlockedDomain(
+                            fields[0], fields[2].equals("+"), LocalDateTime.parse(fields[1])), "baseline");
+                } else {
+                    throw new IllegalArgumentException("unexpected baseline line");
+                }
+                count++;
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                logger.warn("Skipping invalid line in baseline {}: {}", baselineFile, line);
+            }
+        }
+        logger.info("Loaded {} domains from incremental baseline {} (posts up to {})", count, baselineFile, lastDateRaw);
+        return count;
+    }
+
+    /**
+     * Забуває збережену відмітку — наступне {@link #advance} почне з нуля.
+     */
+    public void reset() {
+        lastDate = null;
+        lastDateRaw = null;
+        lastIds.clear();
+    }
+
+    /**
+     * Пересуває відмітку до найновішого з оброблених постів.
+     *
+     * @param posts оброблені пости
+     */
+    public void advance(List<ArticlePost> posts) {
+        for (ArticlePost post : posts) {
+            String raw = post.getDate();
+            if (raw == null || raw.isEmpty()) {
+                continue;
+            }
+            LocalDateTime date;
+            try {
+                date = parseDate(raw);
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            int cmp = lastDate == null ? 1 : date.compareTo(lastDate);
+            if (cmp > 0) {
+                lastDate = date;
+                lastDateRaw = raw;
+                lastIds.clear();
+            }
+            if (cmp >= 0) {
+                lastIds.add(idOf(post));
+            }
+        }
+    }
+
+    /**
+     * Атомарно зберігає відмітку і знімок останніх подій доменів з вкладень
+     * CIP: ім'я, дата і статус (+ блокування, - розблокування) в рядку.
+     *
+     * @param bo перелік доменів
+     * @throws IOException у разі помилок запису
+     */
+    public void store(BlockedObjects bo) throws IOException {
+        DomainEventStore events = bo.getAttachmentEvents();
+        Path baselineTemp = baselineFile.resolveSibling(baselineFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(baselineTemp, StandardCharsets.UTF_8)) {
+            for (int id = 0; id < events.size(); id++) {
+                long packed = events.latestOf(id);
+                out.write(events.nameOf(id));
+                out.write(' ');
+                out.write(LocalDateTime.ofEpochSecond(DomainEventStore.epochSecondOf(packed), 0, ZoneOffset.UTC).toString());
+                out.write(DomainEventStore.isBlocked(packed) ? " +" : " -");
+                out.newLine();
+            }
+        }
+        StreamingDownload.moveAtomically(baselineTemp, baselineFile);
+
+        Properties state = new Properties();
+        if (lastDateRaw != null) {
+            state.setProperty("last_date", lastDateRaw);
+        }
+        state.setProperty("last_ids", String.join(",", lastIds));
+        state.setProperty("config_sha256", fingerprint);
+        Path stateTemp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(stateTemp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            state.store(out, "Incremental article state");
+        }
+        StreamingDownload.moveAtomically(stateTemp, stateFile);
+        logger.info("Stored incremental state: posts up to {}, {} domains in baseline", lastDateRaw, events.size());
+    }
+
+    private static String idOf(ArticlePost post) {
+        return String.valueOf(post.getId());
+    }
+
+    private static LocalDateTime parseDate(String s) {
+        try {
+            return LocalDateTime.parse(s, DateTimeFormatter.ISO_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(s).toLocalDateTime();
+        }
+    }
+
+    private static String fingerprintOf(Properties p) {
+        String joined = Arrays.stream(FINGERPRINT_KEYS)
+                .map(k -> k + "=" + p.getProperty(k, "").trim())
+                .collect(Collectors.joining("\n"))
+                + "\nrules=" + ValidationCache.VALIDATION_RULES_VERSION;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(joined.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
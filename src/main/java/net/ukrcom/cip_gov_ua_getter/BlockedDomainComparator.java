@@ -25,12 +25,10 @@ import java.util.Comparator;
  *
  * @author olden
  */
-public class BlockedDomainComparator implements Comparator {
+public class BlockedDomainComparator implements Comparator<BlockedDomain> {
 
     @Override
-    public int compare(Object o1, Object o2) {
-        BlockedDomain d1 = (BlockedDomain) o1;
-        BlockedDomain d2 = (BlockedDomain) o2;
+    public int compare(BlockedDomain d1, BlockedDomain d2) {
         int compare = d1.getDomainName().compareTo(d2.getDomainName());
         if (compare != 0) {
             return compare;
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Потоковий запис переліку заблокованих доменів у формат DNS-резолвера.
+ * {@link BlockedObjects} проходить відсортованим переліком один раз і
+ * передає кожен домен усім записувачам; жоден із них не тримає власної копії
+ * переліку в пам'яті. Кожен записувач пише підготовлений файл поруч із
+ * цільовим ({@link #stagedPath}); на місце цільових їх переносить
+ * {@link BlockedObjects} лише після того, як підготовлено всі файли й
+ * зафіксовано номер переліку.
+ *
+ * Формати задає властивість blocked_outputs: пари формат:файл через ;,
+ * наприклад rpz:blocked.rpz;unbound:blocked.unbound.conf. Підтримуються
+ * text, rpz, ixfr, unbound, bind і dnsmasq.
+ *
+ * @author olden
+ */
+public abstract class BlockedListWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockedListWriter.class);
+
+    protected final Path target;
+    protected Path stagedPath;
+    private FileOutputStream fileOut;
+    protected Writer out;
+
+    protected BlockedListWriter(Path target) {
+        this.target = target;
+    }
+
+    /**
+     * Створює записувачі за властивістю blocked_outputs.
+     *
+     * @param p - об'єкт властивостей
+     * @return записувачі; невідомі формати пропускаються з попередженням
+     */
+    public static List<BlockedListWriter> fromProperties(Properties p) {
+        List<BlockedListWriter> writers = new ArrayList<>();
+        for (String spec : p.getProperty("blocked_outputs", "").split(";")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int colon = spec.indexOf(':');
+            if (colon <= 0 || colon == spec.length() - 1) {
+                logger.warn("Invalid blocked_outputs entry, expected format:file: {}", spec);
+                continue;
+            }
+            String format = spec.substring(0, colon).trim().toLowerCase();
+            Path file = Paths.get(spec.substring(colon + 1).trim());
+            switch (format) {
+                case "text" ->
+                    writers.add(new Text(file));
+                case "rpz" ->
+                    writers.add(new Rpz(file, p));
+                case "ixfr" ->
+                    writers.add(new Ixfr(file, p));
+                case "unbound" ->
+                    writers.add(new Unbound(file, p));
+                case "bind" ->
+                    writers.add(new Bind(file, p));
+                case "dnsmasq" ->
+                    writers.add(new Dnsmasq(file));
+                default ->
+                    logger.warn("Unknown blocked_outputs format {}, skipping: {}", format, spec);
+            }
+        }
+        return writers;
+    }
+
+    /**
+     * Готує файли всіх записувачів за один прохід відсортованим переліком.
+     * Цільові файли не змінюються; у разі помилки всі підготовлені файли
+     * видаляються.
+     *
+     * @param writers записувачі
+     * @param serial порядковий номер переліку
+     * @param domains відсортований перелік доменів
+     * @throws IOException у разі помилок запису
+     */
+    public static void stageAll(List<BlockedListWriter> writers, long serial, List<String> domains) throws IOException {
+        try {
+            for (BlockedListWriter w : writers) {
+                w.begin(serial);
+            }
+            for (String domain : domains) {
+                for (BlockedListWriter w : writers) {
+                    w.domain(domain);
+                }
+            }
+            for (BlockedListWriter w : writers) {
+                w.finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            for (BlockedListWriter w : writers) {
+                w.discard();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Шлях підготовленого файлу для номера переліку.
+     *
+     * @param target цільовий файл
+     * @param serial порядковий номер переліку
+     * @return шлях підготовленого файлу
+     */
+    public static Path stagedPath(Path target, long serial) {
+        return target.resolveSibling(target.getFileName() + ".staged-" + serial);
+    }
+
+    /**
+     * Цільовий файл.
+     *
+     * @return шлях до файлу
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Опис формату, файлу та налаштувань, що впливають на вміст. Входить у
+     * відбиток налаштувань: якщо він змінився, файли переписуються навіть за
+     * незмінного переліку.
+     *
+     * @return опис записувача
+     */
+    public String describe() {
+        return getClass().getSimpleName().toLowerCase() + ":" + target;
+    }
+
+    /**
+     * Чи є цільовий файл на місці.
+     *
+     * @return true, якщо файл існує
+     */
+    public boolean isPresent() {
+        return Files.isRegularFile(target);
+    }
+
+    /**
+     * Підготовлений файл або null, якщо записувач нічого не підготував.
+     *
+     * @return шлях підготовленого файлу
+     */
+    public Path getStaged() {
+        return stagedPath;
+    }
+
+    /**
+     * Відкриває підготовлений файл і пише заголовок.
+     *
+     * @param serial порядковий номер переліку
+     * @throws IOException у разі помилок запису
+     */
+    public void begin(long serial) throws IOException {
+        stagedPath = stagedPath(target, serial);
+        fileOut = new FileOutputStream(stagedPath.toFile());
+        out = new BufferedWriter(new OutputStreamWriter(fileOut, StandardCharsets.UTF_8));
+        header(serial);
+    }
+
+    /**
+     * Пише один домен.
+     *
+     * @param domain ім'я домену в ASCII
+     * @throws IOException у разі помилок запису
+     */
+    public abstract void domain(String domain) throws IOException;
+
+    /**
+     * Пише заголовок файлу.
+     *
+     * @param serial порядковий номер переліку
+     * @throws IOException у разі помилок запису
+     */
+    protected void header(long serial) throws IOException {
+    }
+
+    /**
+     * Скидає підготовлений файл на диск і закриває його.
+     *
+     * @throws IOException у разі помилок запису
+     */
+    public void finish() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+        out.close();
+        out = null;
+    }
+
+    /**
+     * Зміни між двома номерами переліку. Викликається після
+     * {@link #stageAll} і до фіксації номера; записувач, що їх використовує,
+     * готує власний файл. Більшість форматів їх не використовує.
+     *
+     * @param fromSerial попередній номер (0 — попереднього переліку немає)
+     * @param toSerial новий номер
+     * @param added додані домени, відсортовані
+     * @param removed видалені домени, відсортовані
+     * @throws IOException у разі помилок запису
+     */
+    public void changes(long fromSerial, long toSerial, List<String> added, List<String> removed) throws IOException {
+    }
+
+    private void discard() {
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            if (stagedPath != null) {
+                Files.deleteIfExists(stagedPath);
+                stagedPath = null;
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to delete {}: {}", stagedPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Звичайний текст: домен на рядок.
+     */
+    public static class Text extends BlockedListWriter {
+
+        public Text(Path target) {
+            super(target);
+        }
+
+        @Override
+        public void domain(String domain) throws IOException {
+            out.write(domain);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Зона RPZ (Response Policy Zone): кожен домен і його піддомени
+     * відповідають NXDOMAIN. Серійний номер SOA — номер переліку.
+     * Властивості rpz_ttl (300), rpz_ns (localhost.) і rpz_hostmaster
+     * (hostmaster.localhost.).
+     */
+    public static class Rpz extends BlockedListWriter {
+
+        private final Soa soa;
+
+        public Rpz(Path target, Properties p) {
+            super(target);
+            this.soa = new Soa(p);
+        }
+
+        @Override
+        public String describe() {
+            return super.describe() + ":" + soa.describe();
+        }
+
+        @Override
+        protected void header(long serial) throws IOException {
+            out.write("$TTL " + soa.ttl + "\n");
+            out.write(soa.record(serial));
+            out.write("@ IN NS " + soa.ns + "\n");
+        }
+
+        @Override
+        public void domain(String domain) throws IOException {
+            writeRecords(out, domain);
+        }
+
+        static void writeRecords(Writer out, String domain) throws IOException {
+            out.write(domain);
+            out.write(" CNAME .\n*.");
+            out.write(domain);
+            out.write(" CNAME .\n");
+        }
+    }
+
+    /**
+     * Журнал змін зони RPZ у стилі IXFR (RFC 1995): для кожного нового
+     * номера дописується SOA старої версії, видалені записи, SOA нової версії
+     * і додані записи. Повного переліку не пише. Як і для файлів змін,
+     * зберігаються блоки останніх blocked_delta_keep (30) номерів, але
+     * щонайменше один.
+     */
+    public static class Ixfr extends BlockedListWriter {
+
+        private static final String BLOCK_PREFIX = "; IXFR ";
+
+        private final Soa soa;
+        private final int keep;
+
+        public Ixfr(Path target, Properties p) {
+            super(target);
+            this.soa = new Soa(p);
+            int parsedKeep = 30;
+            try {
+                parsedKeep = Math.max(1, Integer.parseInt(p.getProperty("blocked_delta_keep", "30").trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid blocked_delta_keep value, using default: 30");
+            }
+            this.keep = parsedKeep;
+        }
+
+        @Override
+        public void begin(long serial) {
+            stagedPath = null;
+        }
+
+        @Override
+        public void domain(String domain) {
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public boolean isPresent() {
+            // Журнал з'являється лише після першої зміни
+            return true;
+        }
+
+        @Override
+        public String describe() {
+            return super.describe() + ":" + soa.describe();
+        }
+
+        /**
+         * Готує копію журналу з дописаним блоком змін; найстаріші блоки понад
+         * blocked_delta_keep у копію не потрапляють. Блок потрапляє в журнал
+         * лише разом із перенесенням підготовленого файлу після фіксації
+         * номера, тож повторний запуск після збою не продублює його.
+         */
+        @Override
+        public void changes(long fromSerial, long toSerial, List<String> added, List<String> removed) throws IOException {
+            if (fromSerial == 0) {
+                // Без попередньої версії зони різниці немає — клієнт отримає повну зону
+                return;
+            }
+            Path staged = stagedPath(target, toSerial);
+            try (FileOutputStream journalOut = new FileOutputStream(staged.toFile())) {
+                Writer w = new BufferedWriter(new OutputStreamWriter(journalOut, StandardCharsets.UTF_8));
+                if (Files.exists(target)) {
+                    copyRecentBlocks(w, keep - 1);
+                }
+                w.write(BLOCK_PREFIX + fromSerial + " -> " + toSerial + "\n");
+                w.write(soa.record(fromSerial));
+                for (String domain : removed) {
+                    Rpz.writeRecords(w, domain);
+                }
+                w.write(soa.record(toSerial));
+                for (String domain : added) {
+                    Rpz.writeRecords(w, domain);
+                }
+                w.flush();
+                journalOut.getFD().sync();
+            }
+            stagedPath = staged;
+            logger.info("Staged IXFR {} -> {} for {}: {} added, {} removed",
+                    fromSerial, toSerial, target, added.size(), removed.size());
+        }
+
+        /**
+         * Переписує з поточного журналу останні blocks блоків. Журнал
+         * читається двічі: спершу рахуються блоки, потім копіюються потрібні,
+         * тож у пам'яті він не тримається.
+         */
+        private void copyRecentBlocks(Writer w, int blocks) throws IOException {
+            long total;
+            try (Stream<String> lines = Files.lines(target, StandardCharsets.UTF_8)) {
+                total = lines.filter(line -> line.startsWith(BLOCK_PREFIX)).count();
+            }
+            long skip = Math.max(0, total - blocks);
+            if (skip > 0) {
+                logger.info("Dropping {} oldest IXFR blocks from {}", skip, target);
+            }
+            try (BufferedReader in = Files.newBufferedReader(target, StandardCharsets.UTF_8)) {
+                long seen = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(BLOCK_PREFIX)) {
+                        seen++;
+                    }
+                    if (skip == 0 || seen > skip) {
+                        w.write(line);
+                        w.write("\n");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Налаштування unbound: local-zone для кожного домену. Тип зони —
+     * властивість unbound_zone_type (always_nxdomain).
+     */
+    public static class Unbound extends BlockedListWriter {
+
+        private final String zoneType;
+
+        public Unbound(Path target, Properties p) {
+            super(target);
+            this.zoneType = p.getProperty("unbound_zone_type", "always_nxdomain").trim();
+        }
+
+        @Override
+        public String describe() {
+            return super.describe() + ":" + zoneType;
+        }
+
+        @Override
+        protected void header(long serial) throws IOException {
+            out.write("# serial " + serial + "\nserver:\n");
+        }
+
+        @Override
+        public void domain(String domain) throws IOException {
+            out.write("    local-zone: \"");
+            out.write(domain);
+            out.write(".\" ");
+            out.write(zoneType);
+            out.write("\n");
+        }
+    }
+
+    /**
+     * Налаштування BIND: для кожного домену зона з порожнім файлом зони,
+     * указаним у властивості bind_zone_file (/etc/bind/db.empty).
+     */
+    public static class Bind extends BlockedListWriter {
+
+        private final String zoneFile;
+
+        public Bind(Path target, Properties p) {
+            super(target);
+            this.zoneFile = p.getProperty("bind_zone_file", "/etc/bind/db.empty").trim();
+        }
+
+        @Override
+        public String describe() {
+            return super.describe() + ":" + zoneFile;
+        }
+
+        @Override
+        protected void header(long serial) throws IOException {
+            out.write("// serial " + serial + "\n");
+        }
+
+        @Override
+        public void domain(String domain) throws IOException {
+            out.write("zone \"");
+            out.write(domain);
+            out.write("\" { type master; file \"");
+            out.write(zoneFile);
+            out.write("\"; };\n");
+        }
+    }
+
+    /**
+     * Налаштування dnsmasq: address=/домен/ відповідає NXDOMAIN для домену й
+     * піддоменів.
+     */
+    public static class Dnsmasq extends BlockedListWriter {
+
+        public Dnsmasq(Path target) {
+            super(target);
+        }
+
+        @Override
+        protected void header(long serial) throws IOException {
+            out.write("# serial " + serial + "\n");
+        }
+
+        @Override
+        public void domain(String domain) throws IOException {
+            out.write("address=/");
+            out.write(domain);
+            out.write("/\n");
+        }
+    }
+
+    /**
+     * Запис SOA, спільний для RPZ та журналу IXFR.
+     */
+    private static final class Soa {
+
+        final int ttl;
+        final String ns;
+        final String hostmaster;
+
+        Soa(Properties p) {
+            int parsedTtl = 300;
+            try {
+                parsedTtl = Math.max(0, Integer.parseInt(p.getProperty("rpz_ttl", "300").trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid rpz_ttl value, using default: 300");
+            }
+            this.ttl = parsedTtl;
+            this.ns = p.getProperty("rpz_ns", "localhost.").trim();
+            this.hostmaster = p.getProperty("rpz_hostmaster", "hostmaster.localhost.").trim();
+        }
+
+        String describe() {
+            return ttl + ":" + ns + ":" + hostmaster;
+        }
+
+        String record(long serial) {
+            return "@ IN SOA " + ns + " " + hostmaster + " " + serial + " 3600 600 604800 " + ttl + "\n";
+        }
+    }
+}
@@ -7,17 +7,20 @@ package net.ukrcom.cip_gov_ua_getter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.StringReader;
 import java.net.IDN;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Properties;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import org.apache.commons.validator.routines.DomainValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +38,14 @@ public class BlockedObjects {
     protected String currentDir;  // Current dir using System
     private final String[] blockedNames;
     private final String blockedResultName;
-    private final TreeSet<BlockedDomain> blockedDomains;
+    private final Path serialPath;
+    private final int deltaKeep;
+    private final List<BlockedListWriter> outputs;
+    // Для кожного домену — лише остання подія в компактному примітивному вигляді
+    private final DomainEventStore latestEvents;
+    // Останні події з вкладень CIP — лише вони зберігаються між запусками
+    private final DomainEventStore attachmentEvents;
+    private DomainEventJournal journal;
 
     /**
      * Конструктор класа.
@@ -52,12 +62,22 @@ public class BlockedObjects {
 
         this.blockedNames = p.getProperty("blocked", "blocked.txt").split(";");
         this.blockedResultName = p.getProperty("blocked_result", "blocked.result.txt");
-        this.blockedDomains = new TreeSet<>(new BlockedDomainComparator());
+        this.serialPath = Paths.get(p.getProperty("blocked_result_serial", this.blockedResultName.trim() + ".serial").trim());
+        int parsedKeep = 30;
+        try {
+            parsedKeep = Math.max(0, Integer.parseInt(p.getProperty("blocked_delta_keep", "30").trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid blocked_delta_keep value, using default: 30");
+        }
+        this.deltaKeep = parsedKeep;
+        this.outputs = BlockedListWriter.fromProperties(p);
+        this.latestEvents = new DomainEventStore();
+        this.attachmentEvents = new DomainEventStore();
     }
 
     /**
      * Зчитує перелік доменів із файлів, указаних у властивості blocked. Додає
-     * їх до TreeSet із датою за замовчуванням (початок епохи).
+     * їх до переліку з датою за замовчуванням (початок епохи).
      *
      * @return цей об'єкт для ланцюгових викликів
      * @throws IOException у разі помилок читання файлів
@@ -103,7 +123,7 @@ public class BlockedObjects {
                                     return;
                                 }
                                 if (domainValidator.isValid(idnDomain)) {
-                                    this.addBlockedDomainName(new BlockedDomain(idnDomain));
+                                    this.addBlockedDomainName(new BlockedDomain(idnDomain), "file:" + blockedName.trim());
                                     logger.info("Added domain from file: {}", idnDomain);
                                 } else {
                                     logger.warn("Invalid domain in file: {}", line);
@@ -120,51 +140,336 @@ public class BlockedObjects {
     }
 
     /**
-     * Додає домен до переліку.
+     * Додає подію щодо домену. Для домену зберігається лише найновіша подія;
+     * якщо дати збігаються, блокування переважає розблокування (так само, як
+     * упорядковує {@link BlockedDomainComparator}).
      *
      * @param bdn об'єкт BlockedDomain
-     * @return true, якщо домен додано успішно
+     * @return true, якщо подія стала останньою для домену
      */
     public boolean addBlockedDomainName(BlockedDomain bdn) {
-        return this.blockedDomains.add(bdn);
+        return addBlockedDomainName(bdn, "");
+    }
+
+    /**
+     * Додає подію щодо домену із зазначенням джерела. Події з вкладень CIP
+     * (джерело attachment:id або baseline) запам'ятовуються окремо для
+     * збереження між запусками; якщо така подія стала останньою серед них і
+     * журнал підключено, вона дописується в журнал. Події з інших джерел
+     * (файли blocked, парсери aggressor і nkek) не зберігаються — ці джерела
+     * перечитуються під час кожного запуску.
+     *
+     * @param bdn об'єкт BlockedDomain
+     * @param source джерело події (вкладення, файл, парсер)
+     * @return true, якщо подія стала останньою для домену
+     */
+    public boolean addBlockedDomainName(BlockedDomain bdn, String source) {
+        long packed = DomainEventStore.pack(bdn.getDateTime(), bdn.getIsBlocked());
+        boolean latest = this.latestEvents.add(bdn.getDomainName(), packed);
+        if (isPersisted(source) && this.attachmentEvents.add(bdn.getDomainName(), packed) && this.journal != null) {
+            this.journal.append(bdn.getDomainName(), packed, source);
+        }
+        return latest;
+    }
+
+    private static boolean isPersisted(String source) {
+        return source.startsWith("attachment:") || source.equals("baseline");
+    }
+
+    /**
+     * Підключає журнал подій. Якщо resume, події з вкладень відновлюються зі
+     * знімка та журналу; інакше в журнал пишеться маркер скидання і стан
+     * будується з нуля. Далі кожна подія з вкладення, що змінила стан,
+     * дописується в журнал.
+     *
+     * @param j журнал подій
+     * @param resume true, щоб продовжити від збереженого стану
+     * @return цей об'єкт для ланцюгових викликів
+     * @throws IOException у разі помилок читання журналу
+     */
+    public BlockedObjects attachJournal(DomainEventJournal j, boolean resume) throws IOException {
+        if (resume) {
+            j.replay(this.attachmentEvents);
+            for (int id = 0; id < this.attachmentEvents.size(); id++) {
+                this.latestEvents.add(this.attachmentEvents.nameOf(id), this.attachmentEvents.latestOf(id));
+            }
+        } else {
+            j.reset();
+        }
+        this.journal = j;
+        return this;
+    }
+
+    /**
+     * Останні події доменів з вкладень CIP, включно з розблокуваннями. Саме
+     * вони зберігаються між запусками. Сховище призначене лише для читання.
+     *
+     * @return сховище останніх подій з вкладень
+     */
+    public DomainEventStore getAttachmentEvents() {
+        return this.attachmentEvents;
+    }
+
+    /**
+     * Повертає домени, що після застосування всіх подій у хронологічному
+     * порядку залишаються заблокованими.
+     *
+     * @return відсортований перелік імен доменів
+     */
+    public List<String> getBlockedResult() {
+        int[] ids = this.latestEvents.sortedBlockedIds();
+        List<String> blockedDomainsResultList = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            blockedDomainsResultList.add(this.latestEvents.nameOf(id));
+        }
+        return blockedDomainsResultList;
     }
 
     /**
      * Зберігає перелік доменів у вихідний файл, указаний у blocked_result.
-     * Включає лише домени зі статусом isBlocked = true.
+     * Включає лише домени зі статусом isBlocked = true. Якщо журнал
+     * підключено, спершу фіксує його на диску.
+     *
+     * Поруч із результатом у файлі blocked_result_serial зберігається його
+     * порядковий номер (serial), SHA-256 вмісту і відбиток налаштувань
+     * виводу. Якщо хеш нового переліку й відбиток збігаються зі збереженими і
+     * всі файли на місці, нічого не пишеться. Інакше, крім повного
+     * файлу, пишуться файли змін із суфіксами .N.added і .N.removed, де N —
+     * новий номер; зберігаються файли змін останніх blocked_delta_keep
+     * номерів. Формати з blocked_outputs пишуться за той самий прохід
+     * переліком.
+     *
+     * Запис стійкий до збоїв: спершу всі файли готуються поруч із цільовими,
+     * потім атомарно фіксується номер разом із хешем і переліком
+     * підготовлених файлів, і лише після цього файли переносяться на місце.
+     * Перенесення, перерване збоєм, завершується на початку наступного
+     * виклику.
      *
      * @return цей об'єкт для ланцюгових викликів
      * @throws IOException у разі помилок запису
      */
     public BlockedObjects storeState() throws IOException {
-        TreeSet<String> blockedDomainsResultList = new TreeSet<>();
-        for (BlockedDomain bd : this.blockedDomains) {
-            if (bd.getIsBlocked()) {
-                blockedDomainsResultList.add(bd.getDomainName());
-            } else {
-                blockedDomainsResultList.remove(bd.getDomainName());
-            }
+        if (this.journal != null) {
+            this.journal.commit(this.attachmentEvents);
         }
+        ResultState previous = ResultState.read(this.serialPath);
+        publish(previous);
 
+        List<String> blockedDomainsResultList = getBlockedResult();
+        String sha256 = sha256Of(blockedDomainsResultList);
         Path targetPath = Paths.get(this.blockedResultName.trim());
-        Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".tmp");
-        try (PrintWriter pw = new PrintWriter(
-                new OutputStreamWriter(
-                        new FileOutputStream(tempPath.toFile()),
-                        "UTF-8"))) {
-            logger.info("Writing blocked domains to {}", tempPath);
-            for (String s : blockedDomainsResultList) {
-                pw.println(s);
+        boolean exists = Files.isRegularFile(targetPath);
+        String config = configOf(targetPath);
+        boolean present = exists;
+        for (BlockedListWriter w : this.outputs) {
+            present &= w.isPresent();
+        }
+        if (present && sha256.equals(previous.sha256) && config.equals(previous.config)) {
+            logger.info("Blocked domains are unchanged ({} domains, serial {}), {} is not rewritten",
+                    blockedDomainsResultList.size(), previous.serial, this.blockedResultName);
+            return this;
+        }
+
+        List<String> previousList = exists ? readPrevious(targetPath) : List.of();
+        if (exists && previous.sha256 != null && !previous.sha256.equals(sha256Of(previousList))) {
+            logger.warn("{} does not match serial {}, deltas are computed against its current content",
+                    targetPath, previous.serial);
+        }
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        diff(previousList, blockedDomainsResultList, added, removed);
+
+        long serial = previous.serial + 1;
+        List<BlockedListWriter> writers = new ArrayList<>();
+        writers.add(new BlockedListWriter.Text(targetPath));
+        writers.addAll(this.outputs);
+        List<BlockedListWriter> staged = new ArrayList<>(writers);
+        if (this.deltaKeep > 0) {
+            BlockedListWriter addedWriter = new BlockedListWriter.Text(deltaPath(targetPath, serial, "added"));
+            BlockedListWriter removedWriter = new BlockedListWriter.Text(deltaPath(targetPath, serial, "removed"));
+            BlockedListWriter.stageAll(List.of(addedWriter), serial, added);
+            BlockedListWriter.stageAll(List.of(removedWriter), serial, removed);
+            staged.add(addedWriter);
+            staged.add(removedWriter);
+        }
+        logger.info("Writing blocked domains to {}", targetPath);
+        // Повний файл і всі формати — за один прохід відсортованим переліком
+        BlockedListWriter.stageAll(writers, serial, blockedDomainsResultList);
+
+        for (BlockedListWriter w : this.outputs) {
+            w.changes(exists ? previous.serial : 0, serial, added, removed);
+        }
+
+        ResultState next = new ResultState(serial, sha256, config);
+        for (BlockedListWriter w : staged) {
+            if (w.getStaged() != null) {
+                next.staged.add(w.getTarget());
             }
-            pw.flush();
         }
-        try {
-            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (AtomicMoveNotSupportedException e) {
-            logger.warn("Atomic move not supported, falling back to regular move: {}", e.getMessage());
-            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        next.write(this.serialPath);
+        publish(next);
+        if (this.deltaKeep > 0) {
+            pruneDeltas(targetPath, serial - this.deltaKeep);
         }
-        logger.info("Successfully stored blocked domains to {}", this.blockedResultName);
+        logger.info("Successfully stored blocked domains to {}: serial {}, {} added, {} removed",
+                this.blockedResultName, serial, added.size(), removed.size());
         return this;
     }
+
+    /**
+     * Переносить на місце файли, підготовлені для зафіксованого номера.
+     * Файли, яких уже немає, були перенесені раніше.
+     */
+    private static void publish(ResultState state) throws IOException {
+        for (Path target : state.staged) {
+            Path staged = BlockedListWriter.stagedPath(target, state.serial);
+            if (Files.exists(staged)) {
+                StreamingDownload.moveAtomically(staged, target);
+                logger.debug("Published {} (serial {})", target, state.serial);
+            }
+        }
+    }
+
+    /**
+     * Зафіксований стан результату: номер, SHA-256 вмісту і підготовлені до
+     * перенесення файли.
+     */
+    private static final class ResultState {
+
+        final long serial;
+        final String sha256;
+        final String config;
+        final List<Path> staged = new ArrayList<>();
+
+        ResultState(long serial, String sha256, String config) {
+            this.serial = serial;
+            this.sha256 = sha256;
+            this.config = config;
+        }
+
+        static ResultState read(Path path) {
+            if (!Files.isRegularFile(path)) {
+                return new ResultState(0, null, null);
+            }
+            try {
+                String content = Files.readString(path, StandardCharsets.UTF_8).trim();
+                if (content.matches("\\d+")) {
+                    // Файл попередньої версії містив лише номер
+                    return new ResultState(Long.parseLong(content), null, null);
+                }
+                Properties p = new Properties();
+                p.load(new StringReader(content));
+                ResultState state = new ResultState(Long.parseLong(p.getProperty("serial", "0").trim()),
+                        p.getProperty("sha256"), p.getProperty("config"));
+                for (String staged : p.getProperty("staged", "").split(";")) {
+                    if (!staged.isBlank()) {
+                        state.staged.add(Paths.get(staged.trim()));
+                    }
+                }
+                return state;
+            } catch (IOException | NumberFormatException e) {
+                logger.warn("Invalid serial state in {}, starting from 1: {}", path, e.getMessage());
+                return new ResultState(0, null, null);
+            }
+        }
+
+        void write(Path path) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("serial", Long.toString(serial));
+            p.setProperty("sha256", sha256);
+            p.setProperty("config", config);
+            p.setProperty("staged", staged.stream().map(Path::toString).collect(Collectors.joining(";")));
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                p.store(out, "Blocked result serial");
+                out.getFD().sync();
+            }
+            StreamingDownload.moveAtomically(temp, path);
+        }
+    }
+
+    /**
+     * Відбиток налаштувань виводу: файл результату, зберігання файлів змін і
+     * опис кожного формату з blocked_outputs.
+     */
+    private String configOf(Path targetPath) {
+        List<String> parts = new ArrayList<>();
+        parts.add("result:" + targetPath);
+        parts.add("deltas:" + this.deltaKeep);
+        for (BlockedListWriter w : this.outputs) {
+            parts.add(w.describe());
+        }
+        return sha256Of(parts);
+    }
+
+    private static String sha256Of(List<String> domains) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String domain : domains) {
+                digest.update(domain.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Читає попередній результат. Файл, записаний цим класом, уже
+     * відсортований; відредагований вручну сортується.
+     */
+    private static List<String> readPrevious(Path path) throws IOException {
+        List<String> previous = new ArrayList<>();
+        boolean sorted = true;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String name = line.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (sorted && !previous.isEmpty() && previous.get(previous.size() - 1).compareTo(name) >= 0) {
+                sorted = false;
+            }
+            previous.add(name);
+        }
+        if (!sorted) {
+            previous = new ArrayList<>(new TreeSet<>(previous));
+        }
+        return previous;
+    }
+
+    /**
+     * Злиття двох відсортованих переліків за один прохід.
+     */
+    private static void diff(List<String> previous, List<String> current, List<String> added, List<String> removed) {
+        int i = 0;
+        int j = 0;
+        while (i < previous.size() || j < current.size()) {
+            int cmp = i == previous.size() ? 1
+                    : j == current.size() ? -1
+                    : previous.get(i).compareTo(current.get(j));
+            if (cmp < 0) {
+                removed.add(previous.get(i++));
+            } else if (cmp > 0) {
+                added.add(current.get(j++));
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private static Path deltaPath(Path targetPath, long serial, String kind) {
+        return targetPath.resolveSibling(targetPath.getFileName() + "." + serial + "." + kind);
+    }
+
+    private static void pruneDeltas(Path targetPath, long lastStale) throws IOException {
+        for (long serial = lastStale; serial > 0; serial--) {
+            boolean deleted = Files.deleteIfExists(deltaPath(targetPath, serial, "added"));
+            deleted |= Files.deleteIfExists(deltaPath(targetPath, serial, "removed"));
+            if (!deleted) {
+                break;
+            }
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Обмежений за розміром кеш із витісненням давно не використаних записів
+ * (LRU) і лічильниками влучань, промахів та витіснень.
+ *
+ * Кеш поділено на сегменти з власними блокуваннями, щоб паралельні потоки
+ * валідації не чекали один на одного. Значення обчислюється поза
+ * блокуванням, тож повільне обчислення не зупиняє інші потоки; за гонки
+ * одне й те саме значення може бути обчислене двічі.
+ *
+ * @author olden
+ * @param <K> тип ключа
+ * @param <V> тип значення
+ */
+public class BoundedCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final String name;
+    private final int capacity;
+    private final List<Segment<K, V>> segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Сегмент кешу: LinkedHashMap у порядку доступу під власним блокуванням.
+     * ReentrantLock замість synchronized, щоб не закріплювати віртуальний
+     * потік.
+     */
+    private static final class Segment<K, V> {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<K, V> map;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param name - назва кешу для статистики
+     * @param capacity - максимальна кількість записів
+     */
+    public BoundedCache(String name, int capacity) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        int segmentCount = Math.min(SEGMENTS, this.capacity);
+        List<Segment<K, V>> created = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // Остача розподіляється між першими сегментами, щоб сума дорівнювала capacity
+            int perSegment = this.capacity / segmentCount + (i < this.capacity % segmentCount ? 1 : 0);
+            created.add(new Segment<>(perSegment, evictions));
+        }
+        this.segments = List.copyOf(created);
+    }
+
+    /**
+     * Повертає значення з кешу або обчислює й запам'ятовує його.
+     *
+     * @param key ключ
+     * @param loader функція обчислення значення
+     * @return значення
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentOf(key);
+        segment.lock.lock();
+        try {
+            V value = segment.map.get(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (value != null) {
+            segment.lock.lock();
+            try {
+                segment.map.put(key, value);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    private Segment<K, V> segmentOf(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments.get((h & Integer.MAX_VALUE) % segments.size());
+    }
+
+    /**
+     * Поточна кількість записів.
+     *
+     * @return кількість записів
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits();
+        long total = h + getMisses();
+        return String.format("%s cache: %d/%d entries, %d hits, %d misses, %d evictions, hit rate %.1f%%",
+                name, size(), capacity, h, getMisses(), getEvictions(), total > 0 ? 100.0 * h / total : 0);
+    }
+}
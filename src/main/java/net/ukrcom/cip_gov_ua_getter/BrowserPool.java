@@ -0,0 +1,532 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import com.microsoft.playwright.*;
+import com.microsoft.playwright.options.Cookie;
+import com.microsoft.playwright.options.LoadState;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Пул браузерних сесій Playwright, що створюється один раз на запуск.
+ * Роздає «прогріті» сторінки (вже відкритий базовий URL, встановлені cookies) і
+ * перебудовує контекст браузера лише тоді, коли він зламався.
+ *
+ * Playwright не є потокобезпечним, тому кожна сесія має власний екземпляр
+ * Playwright і видається в ексклюзивне користування.
+ *
+ * Після успішного прогріву стан сесії (cookies, localStorage) зберігається у
+ * файл browser_storage_state разом із терміном дії. Нові контексти, зокрема в
+ * наступних запусках, стартують із цього стану й не відкривають базовий URL,
+ * доки сервер не відхилить збережену сесію (HTTP 401/403).
+ *
+ * @author olden
+ */
+public class BrowserPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrowserPool.class);
+    private static final String DEFAULT_BASE_URL = "https://cip.gov.ua/";
+    private static final double NAVIGATION_TIMEOUT_MS = 30000;
+
+    private final String userAgent;
+    private final String secChUa;
+    private final boolean debug;
+    private final int poolSize;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Session> idle = new LinkedBlockingDeque<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong launches = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong stateReuses = new AtomicLong();
+    private final Path storageStatePath;
+    private final long storageStateTtlMillis;
+    private final ReentrantLock storageLock = new ReentrantLock();
+    private volatile SavedState saved;
+    private volatile boolean closed;
+
+    /**
+     * Дія, що виконується на прогрітій сторінці пулу.
+     *
+     * @param <T> тип результату
+     */
+    @FunctionalInterface
+    public interface PageTask<T> {
+
+        T run(Page page) throws IOException;
+    }
+
+    /**
+     * Одна браузерна сесія: власний Playwright, браузер, контекст і сторінка.
+     */
+    private static final class Session {
+
+        Playwright playwright;
+        Browser browser;
+        BrowserContext context;
+        Page page;
+        final Set<String> warmedFor = new HashSet<>();
+    }
+
+    /**
+     * Збережений на диску стан сесії: для яких базових URL він отриманий і до
+     * якого моменту дійсний.
+     */
+    private static final class SavedState {
+
+        final long expiresAt;
+        final Set<String> origins;
+
+        SavedState(long expiresAt, Set<String> origins) {
+            this.expiresAt = expiresAt;
+            this.origins = origins;
+        }
+
+        boolean isValid() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    /**
+     * Конструктор класа. Браузери запускаються ліниво, при першому запиті.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public BrowserPool(Properties p) {
+        this.debug = p.getProperty("debug", "false").equalsIgnoreCase("true");
+        this.userAgent = p.getProperty(
+                "userAgent",
+                "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/129.0.0.0 Safari/537.36"
+        ).trim();
+        this.secChUa = p.getProperty(
+                "secChUa",
+                "\"Chromium\";v=\"129\", \"Not:A-Brand\";v=\"24\", \"Google Chrome\";v=\"129\""
+        ).trim();
+        // За замовчуванням — по одній сесії на кожне паралельне завантаження
+        int parsedSize = FetchScheduler.getConcurrency(p);
+        try {
+            parsedSize = Math.max(1, Integer.parseInt(
+                    p.getProperty("browser_pool_size", String.valueOf(parsedSize)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid browser_pool_size value, using default: {}", parsedSize);
+        }
+        this.poolSize = parsedSize;
+        this.permits = new Semaphore(this.poolSize, true);
+        logger.debug("Browser pool size set to {}", this.poolSize);
+
+        String statePath = p.getProperty("browser_storage_state", "browser.state.json").trim();
+        this.storageStatePath = statePath.isEmpty() ? null : Paths.get(statePath);
+        long ttlMinutes = 60;
+        try {
+            ttlMinutes = Math.max(1, Long.parseLong(p.getProperty("browser_storage_state_ttl_minutes", "60").trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid browser_storage_state_ttl_minutes value, using default: 60");
+        }
+        this.storageStateTtlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.saved = loadSavedState();
+    }
+
+    /**
+     * Виконує дію на прогрітій для baseUrl сторінці. Якщо дія завершилася
+     * помилкою Playwright, контекст сесії буде перебудовано при наступному
+     * використанні. Якщо сервер відхилив сесію (HTTP 401/403), збережений стан
+     * скидається і наступне використання знову відкриє базовий URL.
+     *
+     * @param <T> тип результату
+     * @param baseUrl базовий URL, на якому має бути відкрита сторінка
+     * @param task дія над сторінкою
+     * @return результат дії
+     * @throws IOException у разі помилок дії або неможливості отримати сесію
+     */
+    public <T> T withPage(String baseUrl, PageTask<T> task) throws IOException {
+        Session session = acquire(baseUrl);
+        boolean broken = true;
+        try {
+            T result = task.run(session.page);
+            broken = false;
+            return result;
+        } catch (IOException e) {
+            broken = false;
+            if (isSessionRejected(e)) {
+                logger.warn("Server rejected browser session for {}: {}", baseUrl, e.getMessage());
+                session.warmedFor.clear();
+                invalidateSavedState();
+            }
+            throw e;
+        } finally {
+            release(session, broken);
+        }
+    }
+
+    private Session acquire(String baseUrl) throws IOException {
+        if (closed) {
+            throw new IOException("Browser pool is closed");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for browser session", e);
+        }
+        Session session = idle.pollFirst();
+        try {
+            if (session == null) {
+                misses.incrementAndGet();
+                session = launch();
+            } else if (session.context == null) {
+                misses.incrementAndGet();
+                rebuild(session);
+            } else if (session.warmedFor.contains(baseUrl)) {
+                hits.incrementAndGet();
+                return session;
+            } else {
+                misses.incrementAndGet();
+            }
+            // Контекст, відновлений зі збереженого стану, прогрівати не треба
+            if (!session.warmedFor.contains(baseUrl)) {
+                warm(session, baseUrl);
+            }
+            return session;
+        } catch (PlaywrightException e) {
+            if (session != null) {
+                release(session, true);
+            } else {
+                permits.release();
+            }
+            throw new IOException("Failed to prepare browser session: " + e.getMessage(), e);
+        }
+    }
+
+    private void release(Session session, boolean broken) {
+        if (broken) {
+            logger.warn("Browser session marked as broken, context will be rebuilt on next use");
+            closeContext(session);
+        }
+        if (closed) {
+            closeSession(session);
+        } else {
+            idle.offerFirst(session);
+        }
+        permits.release();
+    }
+
+    private Session launch() {
+        Session session = new Session();
+        try {
+            launchBrowser(session);
+            newContext(session);
+        } catch (PlaywrightException e) {
+            closeSession(session);
+            throw e;
+        }
+        return session;
+    }
+
+    private void launchBrowser(Session session) {
+        session.playwright = Playwright.create();
+        session.browser = session.playwright.chromium().launch(new BrowserType.LaunchOptions()
+                .setArgs(Arrays.asList("--no-sandbox", "--disable-setuid-sandbox"))
+                .setHeadless(true)
+                .setChannel("chrome"));
+        long launched = launches.incrementAndGet();
+        logger.info("Launched browser #{} for pool (size {})", launched, poolSize);
+    }
+
+    private void rebuild(Session session) {
+        if (session.browser == null || !session.browser.isConnected()) {
+            logger.warn("Browser disconnected, relaunching");
+            closeSession(session);
+            launchBrowser(session);
+        }
+        rebuilds.incrementAndGet();
+        newContext(session);
+    }
+
+    private void newContext(Session session) {
+        Browser.NewContextOptions options = new Browser.NewContextOptions()
+                .setUserAgent(this.userAgent)
+                .setLocale("uk-UA")
+                .setExtraHTTPHeaders(Map.of(
+                        "Accept", "application/json, text/plain, */*",
+                        "Accept-Language", "uk,en-US;q=0.9,en;q=0.8,ru;q=0.7",
+                        "Sec-Ch-Ua", this.secChUa,
+                        "Sec-Fetch-Dest", "empty",
+                        "Sec-Fetch-Mode", "cors",
+                        "Sec-Fetch-Site", "same-origin"
+                ));
+        session.warmedFor.clear();
+        SavedState state = this.saved;
+        if (state != null && state.isValid()) {
+            try {
+                session.context = session.browser.newContext(options.setStorageStatePath(this.storageStatePath));
+                session.warmedFor.addAll(state.origins);
+                stateReuses.incrementAndGet();
+                logger.debug("Browser context restored from saved session state for {}", state.origins);
+            } catch (PlaywrightException e) {
+                logger.warn("Failed to restore saved session state, starting fresh: {}", e.getMessage());
+                invalidateSavedState();
+                session.context = session.browser.newContext(options.setStorageStatePath(null));
+            }
+        } else {
+            session.context = session.browser.newContext(options);
+        }
+        Page page = session.context.newPage();
+
+        // Блокуємо запити до Google Analytics і Google Tag Manager
+        page.route("**/*google-analytics.com/**", route -> {
+            logger.debug("Blocked Google Analytics request: {}", route.request().url());
+            route.abort();
+        });
+        page.route("**/*googletagmanager.com/**", route -> {
+            logger.debug("Blocked Google Tag Manager request: {}", route.request().url());
+            route.abort();
+        });
+
+        // Блокуємо статичні ресурси (зображення, шрифти, стилі)
+        page.route("**/*.{jpg,jpeg,png,svg,woff,woff2,ttf,css,gif,ico}", route -> {
+            logger.debug("Blocked static resource: {}", route.request().url());
+            route.abort();
+        });
+
+        // Логування запитів і відповідей у дебаг-режимі
+        if (this.debug) {
+            page.onRequest(request -> logger.debug("Playwright request: {} {}", request.method(), request.url()));
+            page.onResponse(response -> logger.debug("Playwright response: {} {} {}",
+                    response.status(), response.request().method(), response.url()));
+        }
+        session.page = page;
+    }
+
+    private void warm(Session session, String baseUrl) {
+        logger.debug("Navigating to base URL: {}", baseUrl);
+        session.page.navigate(baseUrl, new Page.NavigateOptions().setTimeout(NAVIGATION_TIMEOUT_MS));
+        session.page.waitForLoadState(LoadState.LOAD, new Page.WaitForLoadStateOptions().setTimeout(NAVIGATION_TIMEOUT_MS));
+        session.warmedFor.add(baseUrl);
+        saveState(session, baseUrl);
+    }
+
+    private static boolean isSessionRejected(IOException e) {
+        if (e instanceof HttpStatusException) {
+            int status = ((HttpStatusException) e).getStatus();
+            return status == 401 || status == 403;
+        }
+        return false;
+    }
+
+    private Path storageMetaPath() {
+        return this.storageStatePath.resolveSibling(this.storageStatePath.getFileName() + ".meta");
+    }
+
+    private SavedState loadSavedState() {
+        if (this.storageStatePath == null || !Files.isReadable(this.storageStatePath)
+                || !Files.isReadable(storageMetaPath())) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(storageMetaPath())) {
+            meta.load(in);
+            SavedState state = new SavedState(
+                    Long.parseLong(meta.getProperty("expires_at", "0").trim()),
+                    new TreeSet<>(Arrays.asList(meta.getProperty("origins", "").split(","))));
+            state.origins.remove("");
+            if (!state.isValid()) {
+                logger.info("Saved browser session {} has expired", this.storageStatePath);
+                return null;
+            }
+            logger.info("Using saved browser session {} for {}", this.storageStatePath, state.origins);
+            return state;
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Failed to read saved browser session {}: {}", storageMetaPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Зберігає стан контексту на диск. Термін дії — browser_storage_state_ttl_minutes,
+     * але не довше, ніж живуть cookies базового URL.
+     */
+    private void saveState(Session session, String baseUrl) {
+        if (this.storageStatePath == null) {
+            return;
+        }
+        String json = session.context.storageState();
+        long expiresAt = System.currentTimeMillis() + this.storageStateTtlMillis;
+        for (Cookie cookie : session.context.cookies(baseUrl)) {
+            if (cookie.expires != null && cookie.expires > 0) {
+                expiresAt = Math.min(expiresAt, (long) (cookie.expires * 1000));
+            }
+        }
+        storageLock.lock();
+        try {
+            Set<String> origins = new TreeSet<>();
+            SavedState previous = this.saved;
+            if (previous != null && previous.isValid()) {
+                origins.addAll(previous.origins);
+                expiresAt = Math.min(expiresAt, previous.expiresAt);
+            }
+            origins.add(baseUrl);
+
+            Path stateTemp = this.storageStatePath.resolveSibling(this.storageStatePath.getFileName() + ".tmp");
+            Files.writeString(stateTemp, json, StandardCharsets.UTF_8);
+            StreamingDownload.moveAtomically(stateTemp, this.storageStatePath);
+
+            Properties meta = new Properties();
+            meta.setProperty("expires_at", String.valueOf(expiresAt));
+            meta.setProperty("origins", String.join(",", origins));
+            Path metaTemp = storageMetaPath().resolveSibling(storageMetaPath().getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(metaTemp,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                meta.store(out, "Browser session state metadata");
+            }
+            StreamingDownload.moveAtomically(metaTemp, storageMetaPath());
+            this.saved = new SavedState(expiresAt, origins);
+            logger.debug("Saved browser session state for {} until {}", origins, Instant.ofEpochMilli(expiresAt));
+        } catch (IOException e) {
+            logger.warn("Failed to save browser session state {}: {}", this.storageStatePath, e.getMessage());
+        } finally {
+            storageLock.unlock();
+        }
+    }
+
+    /**
+     * Скидає збережений стан сесії: наступні контексти знову відкриватимуть
+     * базовий URL.
+     */
+    public void invalidateSavedState() {
+        if (this.storageStatePath == null) {
+            return;
+        }
+        storageLock.lock();
+        try {
+            this.saved = null;
+            Files.deleteIfExists(this.storageStatePath);
+            Files.deleteIfExists(storageMetaPath());
+        } catch (IOException e) {
+            logger.warn("Failed to delete saved browser session {}: {}", this.storageStatePath, e.getMessage());
+        } finally {
+            storageLock.unlock();
+        }
+    }
+
+    private void closeContext(Session session) {
+        if (session.context != null) {
+            try {
+                session.context.close();
+            } catch (PlaywrightException e) {
+                logger.debug("Failed to close browser context: {}", e.getMessage());
+            }
+        }
+        session.context = null;
+        session.page = null;
+        session.warmedFor.clear();
+    }
+
+    private void closeSession(Session session) {
+        closeContext(session);
+        if (session.playwright != null) {
+            try {
+                session.playwright.close();
+            } catch (PlaywrightException e) {
+                logger.debug("Failed to close Playwright: {}", e.getMessage());
+            }
+        }
+        session.browser = null;
+        session.playwright = null;
+    }
+
+    /**
+     * Витягує базовий URL (схема, хост, порт) із повного URL.
+     *
+     * @param url повний URL
+     * @return базовий URL із завершальним «/»
+     */
+    public static String baseUrlOf(String url) {
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (scheme == null || host == null) {
+                throw new URISyntaxException(url, "Missing scheme or host");
+            }
+            int port = uri.getPort();
+            return scheme + "://" + host + (port != -1 ? ":" + port : "") + "/";
+        } catch (URISyntaxException e) {
+            logger.warn("Failed to parse base URL from {}, falling back to default: {}", url, e.getMessage());
+            return DEFAULT_BASE_URL;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLaunches() {
+        return launches.get();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    /**
+     * Закриває браузери, що зараз не використовуються, звільняючи пам'ять. За
+     * потреби пул запустить їх знову.
+     */
+    public void closeIdle() {
+        Session session;
+        while ((session = idle.pollFirst()) != null) {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * Закриває всі браузери пулу та виводить статистику використання.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+        logger.info("Browser pool stats: {} hits, {} misses, {} launches, {} context rebuilds, {} saved session reuses",
+                hits.get(), misses.get(), launches.get(), rebuilds.get(), stateReuses.get());
+    }
+}
@@ -15,137 +15,263 @@
  */
 package net.ukrcom.cip_gov_ua_getter;
 
-import com.microsoft.playwright.*;
+import com.microsoft.playwright.Response;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Клас реалізує зчитування розпоряджень щодо блокування доменів через API.
  *
+ * Відповідь API розбирається потоком просто з мережі (або з архіву), тож
+ * пам'ять не зростає разом із параметром size. Лише запасний шлях через
+ * браузер отримує тіло відповіді цілком.
+ *
  * @author olden
  */
 public class CGUGetter {
 
     private static final Logger logger = LoggerFactory.getLogger(CGUGetter.class);
-    private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY_MS = 3000;
 
     protected final String urlArticles;
-    protected String jsonBodyArticles;
-    private final String userAgent;
-    private final String secChUa;
+    protected List<ArticlePost> posts;
     private final Properties prop;
-    private final boolean debug;
+    private final NetworkArchive archive;
+    private BrowserPool browserPool;
+    private SessionHttpClient httpClient;
+    private ArticleWatermark watermark;
+    private RetryPolicy retryPolicy;
 
     /**
-     * Конструктор класа. Підключаємося до API і зчитуємо отримані дані,
-     * формуючи з них правильний JSON, для подальшого аналізу.
+     * Конструктор класа. Пости зчитуються з API під час першого виклику
+     * {@link #getPosts()}; до цього можна задати пул браузерів, HTTP-клієнт,
+     * відмітку попереднього запуску та політику повторів.
      *
      * @param p - об'єкт властивостей.
      */
     public CGUGetter(Properties p) {
-
         this.prop = p;
-        this.debug = this.prop.getProperty("debug", "false").equalsIgnoreCase("true");
-
+        this.archive = new NetworkArchive(p);
         this.urlArticles = p.getProperty(
                 "urlArticles",
                 "https://cip.gov.ua/services/cm/api/articles?page=0&size=1000&tagId=60751"
         ).trim();
-        this.userAgent = p.getProperty(
-                "userAgent",
-                "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/129.0.0.0 Safari/537.36"
-        ).trim();
-        this.secChUa = p.getProperty(
-                "secChUa",
-                "\"Chromium\";v=\"129\", \"Not:A-Brand\";v=\"24\", \"Google Chrome\";v=\"129\""
-        ).trim();
+    }
 
-        Exception lastException = null;
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                fetchArticles();
-                return;
-            } catch (Exception e) {
-                lastException = e;
-                logger.warn("Attempt {}/{} failed to fetch articles: {}", attempt, MAX_RETRIES, e.getMessage());
-                if (attempt < MAX_RETRIES) {
-                    try {
-                        Thread.sleep(RETRY_DELAY_MS);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
+    /**
+     * Встановлює спільний пул браузерів. Якщо не задано, браузер
+     * запускається лише для цього запиту.
+     *
+     * @param pool пул браузерів
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public CGUGetter setBrowserPool(BrowserPool pool) {
+        this.browserPool = pool;
+        return this;
+    }
+
+    /**
+     * Встановлює HTTP-клієнт швидкого шляху. Якщо сервер повертає
+     * сторінку-перевірку, запит повторюється через браузер.
+     *
+     * @param http HTTP-клієнт або null
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public CGUGetter setHttpClient(SessionHttpClient http) {
+        this.httpClient = http;
+        return this;
+    }
+
+    /**
+     * Вмикає інкрементний режим: API читається сторінками по
+     * incremental_page_size постів, доки не трапиться вже оброблений пост, і
+     * до переліку потрапляють лише нові пости.
+     *
+     * @param watermark відмітка попереднього запуску; якщо null, читається
+     * повний перелік за urlArticles
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public CGUGetter setWatermark(ArticleWatermark watermark) {
+        this.watermark = watermark;
+        return this;
+    }
+
+    /**
+     * Встановлює спільну на весь запуск політику повторів. Якщо не задано,
+     * створюється власна.
+     *
+     * @param policy політика повторів
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public CGUGetter setRetryPolicy(RetryPolicy policy) {
+        this.retryPolicy = policy;
+        return this;
+    }
+
+    private void fetchArticles() throws IOException {
+        if (this.watermark == null) {
+            List<ArticlePost> all = new ArrayList<>();
+            parse(this.urlArticles, all::add);
+            this.posts = all;
+            return;
+        }
+        int pageSize = parsePositiveInt("incremental_page_size", 50);
+        int maxPages = parsePositiveInt("incremental_max_pages", 20);
+        List<ArticlePost> fresh = new ArrayList<>();
+        int page = 0;
+        boolean[] reachedKnown = {false};
+        while (!reachedKnown[0] && page < maxPages) {
+            int batchSize = parse(pageUrl(page, pageSize), post -> {
+                if (this.watermark.isNew(post)) {
+                    fresh.add(post);
+                } else {
+                    reachedKnown[0] = true;
                 }
+            });
+            page++;
+            if (batchSize < pageSize) {
+                break;
             }
         }
-        logger.error("Failed to fetch articles after {} attempts", MAX_RETRIES);
-        throw new RuntimeException("Failed to fetch articles: " + lastException.getMessage(), lastException);
+        if (!reachedKnown[0] && page >= maxPages) {
+            logger.warn("Reached incremental_max_pages ({}) without finding known posts, consider a full resync", maxPages);
+        }
+        logger.info("Incremental fetch: {} new posts in {} pages", fresh.size(), page);
+        this.posts = fresh;
     }
 
-    private void fetchArticles() {
-        try (Playwright playwright = Playwright.create();
-             Browser browser = playwright.chromium().launch(
-                     new BrowserType.LaunchOptions().setHeadless(true).setChannel("chrome"))) {
-
-            BrowserContext context = browser.newContext(new Browser.NewContextOptions()
-                    .setUserAgent(this.userAgent)
-                    .setLocale("uk-UA")
-                    .setExtraHTTPHeaders(Map.of(
-                            "Accept", "application/json, text/plain, */*",
-                            "Accept-Language", "uk,en-US;q=0.9,en;q=0.8,ru;q=0.7",
-                            "Sec-Ch-Ua", this.secChUa,
-                            "Sec-Fetch-Dest", "empty",
-                            "Sec-Fetch-Mode", "cors",
-                            "Sec-Fetch-Site", "same-origin"
-                    )));
-
-            Page page = context.newPage();
-
-            // Блокуємо запити до Google Analytics і Google Tag Manager
-            page.route("**/*google-analytics.com/**", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked Google Analytics request: {}", url);
-                route.abort();
-            });
-            page.route("**/*googletagmanager.com/**", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked Google Tag Manager request: {}", url);
-                route.abort();
-            });
+    private int parsePositiveInt(String key, int def) {
+        try {
+            return Math.max(1, Integer.parseInt(this.prop.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
 
-            // Блокуємо статичні ресурси (зображення, шрифти, стилі)
-            page.route("**/*.{jpg,jpeg,png,svg,woff,woff2,ttf,css,gif,ico}", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked static resource: {}", url);
-                route.abort();
-            });
+    /**
+     * Будує URL сторінки API, замінюючи в urlArticles параметри page і size.
+     */
+    private String pageUrl(int page, int size) {
+        String url = setQueryParam(this.urlArticles, "page", page);
+        return setQueryParam(url, "size", size);
+    }
 
-            // Логування запитів і відповідей у дебаг-режимі
-            if (this.debug) {
-                page.onRequest(request -> logger.debug("Playwright request: {} {}", request.method(), request.url()));
-                page.onResponse(response -> logger.debug("Playwright response: {} {} {}",
-                        response.status(), response.request().method(), response.url()));
+    private static String setQueryParam(String url, String name, int value) {
+        Matcher m = Pattern.compile("([?&])" + name + "=[^&]*").matcher(url);
+        if (m.find()) {
+            return m.replaceFirst("$1" + name + "=" + value);
+        }
+        return url + (url.contains("?") ? "&" : "?") + name + "=" + value;
+    }
+
+    /**
+     * Потоково розбирає відповідь API, не тримаючи її в пам'яті цілком.
+     *
+     * @return кількість прочитаних постів
+     */
+    private int parse(String url, Consumer<ArticlePost> consumer) throws IOException {
+        try (Reader reader = new InputStreamReader(open(url), StandardCharsets.UTF_8)) {
+            return ParseCGUArticlesJson.forEach(new BufferedReader(reader), consumer);
+        }
+    }
+
+    private InputStream open(String url) throws IOException {
+        if (this.archive.isReplay()) {
+            return this.archive.openText(url);
+        }
+        InputStream live = openLive(url);
+        if (!this.archive.isRecording()) {
+            return live;
+        }
+        // Для архіву відповідь спершу пишеться у тимчасовий файл, а розбирається вже з нього
+        Path temp = Files.createTempFile("articles", ".json");
+        try (live) {
+            Files.copy(live, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        this.archive.recordFile(url, Map.of("content-type", "application/json"), temp);
+        return Files.newInputStream(temp, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    private InputStream openLive(String url) throws IOException {
+        if (this.httpClient != null && this.httpClient.isActive()) {
+            try {
+                InputStream body = this.httpClient.openStream(url, "application/json, text/plain, */*");
+                logger.info("Successfully fetched articles for URL: {}", url);
+                return body;
+            } catch (SessionHttpClient.ChallengeException e) {
+                logger.warn("Falling back to browser for articles: {}", e.getMessage());
             }
+        }
+        if (this.browserPool != null) {
+            return fetchBody(this.browserPool, url);
+        }
+        try (BrowserPool ownPool = new BrowserPool(this.prop)) {
+            return fetchBody(ownPool, url);
+        }
+    }
 
+    /**
+     * Завантажує відповідь через браузер. Playwright не віддає тіло потоком,
+     * тож на цьому шляху відповідь буферизується цілком (як байти, без
+     * проміжного рядка).
+     */
+    private InputStream fetchBody(BrowserPool pool, String url) throws IOException {
+        byte[] body = pool.withPage(BrowserPool.baseUrlOf(url), page -> {
             Response response = page.waitForResponse(
                     r -> r.url().contains("articles"),
-                    () -> page.navigate(this.urlArticles)
+                    () -> page.navigate(url)
             );
-
-            String rawResponse = response.text();
-            this.jsonBodyArticles = "{ \"posts\": " + rawResponse + " }";
-            logger.info("Successfully fetched articles for URL: {}", this.urlArticles);
-        }
+            if (response.status() == 401 || response.status() == 403) {
+                throw new HttpStatusException(response.status(), response.statusText());
+            }
+            return response.body();
+        });
+        logger.info("Successfully fetched articles for URL: {}", url);
+        return new ByteArrayInputStream(body);
     }
 
     /**
-     * Повертає зчитаний JSON, для подальшого аналізу.
+     * Повертає пости для подальшого аналізу. Під час першого виклику пости
+     * зчитуються з API.
      *
-     * @return
+     * @return перелік постів
      */
-    public String getJsonBody() {
-        return this.jsonBodyArticles;
+    public List<ArticlePost> getPosts() {
+        if (this.posts == null) {
+            if (this.retryPolicy == null) {
+                this.retryPolicy = new RetryPolicy(this.prop);
+            }
+            try {
+                this.retryPolicy.execute("Fetching articles", this.urlArticles, () -> {
+                    fetchArticles();
+                    return null;
+                });
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to fetch articles: {}", e.getMessage());
+                throw new RuntimeException("Failed to fetch articles: " + e.getMessage(), e);
+            }
+        }
+        return this.posts;
     }
 }
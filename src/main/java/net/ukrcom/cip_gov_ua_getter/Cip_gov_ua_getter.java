@@ -17,25 +17,14 @@ package net.ukrcom.cip_gov_ua_getter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.attribute.FileTime;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.Properties;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ch.qos.logback.classic.Level;
-import java.io.File;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.PatternSyntaxException;
 
 /**
  * Консольна утиліта для збору та обробки розпоряджень про блокування доменів.
@@ -45,22 +34,25 @@ import java.util.regex.PatternSyntaxException;
 public class Cip_gov_ua_getter {
 
     private static final Logger logger = LoggerFactory.getLogger(Cip_gov_ua_getter.class);
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
 
     /**
      * Основний процес.
      *
      * @param args аргументи командного рядка: шлях до cip.gov.ua.properties
-     * (опціонально), --debug або -d для вмикання дебаг-логів
+     * (опціонально), --debug або -d для вмикання дебаг-логів, --full-resync
+     * для повної синхронізації в інкрементному режимі
      */
     public static void main(String[] args) {
         // Налаштування дебаг-логування
         boolean debug = false;
+        boolean fullResync = false;
         String configPath = "cip.gov.ua.properties";
 
         for (String arg : args) {
             if (arg.equals("--debug") || arg.equals("-d")) {
                 debug = true;
+            } else if (arg.equals("--full-resync")) {
+                fullResync = true;
             } else if (!arg.isEmpty()) {
                 configPath = arg;
             }
@@ -87,132 +79,84 @@ public class Cip_gov_ua_getter {
 
             prop.setProperty("debug", debug ? "true" : "false");
 
-            // Завантаження ключових слів для фільтрації
-            String banKeywordsStr = prop.getProperty("ban_keywords", "блокування|обмеження доступу|реалізацію.*обмежувальних");
-            String unbanKeywordsStr = prop.getProperty("unban_keywords", "розблокування|припинення тимчасового");
-            String[] banKeywords = Arrays.stream(banKeywordsStr.split("\\|"))
-                    .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
-            String[] unbanKeywords = Arrays.stream(unbanKeywordsStr.split("\\|"))
-                    .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+            // Місткість кешів валідатора доменів
+            DomainValidatorUtil.configure(prop);
 
-            if (banKeywords.length == 0) {
-                logger.warn("No ban_keywords defined in configuration, using default: блокування");
-                banKeywords = new String[]{"блокування"};
-            }
-            if (unbanKeywords.length == 0) {
-                logger.warn("No unban_keywords defined in configuration, using default: розблокування");
-                unbanKeywords = new String[]{"розблокування"};
-            }
+            // Класифікатор заголовків: ключові слова компілюються й перевіряються один раз
+            TitleClassifier classifier = new TitleClassifier(prop);
 
-            logger.debug("Loaded ban_keywords: {}", Arrays.toString(banKeywords));
-            logger.debug("Loaded unban_keywords: {}", Arrays.toString(unbanKeywords));
+            BlockedObjects bo = new BlockedObjects(prop);
 
-            BlockedObjects bo = new BlockedObjects(prop).getBlockedDomainNames();
+            // Спільна на весь запуск політика повторів для всіх мережевих запитів
+            RetryPolicy retryPolicy = new RetryPolicy(prop);
 
-            CGUGetter cguGetter = new CGUGetter(prop);
-            ParseCGUArticlesJson parseCGUArticlesJson = new ParseCGUArticlesJson(cguGetter.getJsonBody());
-
-            JSONArray posts = parseCGUArticlesJson.getPosts();
-            if (posts.isEmpty()) {
-                logger.warn("No posts found in JSON response");
-                bo.storeState();
-                return;
+            // Інкрементний режим: продовжуємо від відмітки попереднього запуску
+            boolean incremental = prop.getProperty("incremental", "false").trim().equalsIgnoreCase("true");
+            ArticleWatermark watermark = incremental ? ArticleWatermark.load(prop) : null;
+            boolean resume = watermark != null && !fullResync && watermark.isUsable();
+            if (watermark != null && !resume) {
+                watermark.reset();
             }
-            for (int i = 0; i < posts.length(); i++) {
-                try {
-                JSONObject post = posts.getJSONObject(i);
-                String title = post.getString("title");
 
-                // Ігноруємо непубліковані пости
-                if (!post.getString("status").equalsIgnoreCase("PUBLISHED")) {
-                    logger.warn("Skipping unpublished post: {} - {}", post.getString("date"), title);
-                    continue;
+            // Журнал подій: при продовженні стан береться зі знімка та журналу, а не зі знімка доменів
+            DomainEventJournal journal = new DomainEventJournal(prop);
+            boolean replay = resume && journal.isEnabled() && journal.hasState();
+            if (journal.isEnabled()) {
+                bo.attachJournal(journal, replay);
+            }
+            if (resume && !replay) {
+                watermark.loadBaseline(bo);
+            }
+            bo.getBlockedDomainNames();
+
+            // Пости, після збереження яких можна пересунути відмітку
+            List<ArticlePost> completedPosts = null;
+
+            // Браузерний пул, HTTP-клієнт і планувальник завантажень живуть весь час обробки розпоряджень
+            try (BrowserPool browserPool = new BrowserPool(prop);
+                    SessionHttpClient httpClient = new SessionHttpClient(prop, browserPool);
+                    FetchScheduler scheduler = new FetchScheduler(prop, retryPolicy)) {
+
+                CGUGetter cguGetter = new CGUGetter(prop)
+                        .setBrowserPool(browserPool)
+                        .setHttpClient(httpClient)
+                        .setWatermark(resume ? watermark : null)
+                        .setRetryPolicy(retryPolicy);
+                List<ArticlePost> posts = cguGetter.getPosts();
+                if (posts.isEmpty() && !resume) {
+                    logger.warn("No posts found in JSON response");
+                    bo.storeState();
+                    return;
                 }
 
-                // Перевіряємо, чи пост стосується блокування/обмеження
-                boolean isRelevant = false;
-                for (String keyword : banKeywords) {
-                    try {
-                        if (title.matches(".*" + keyword + ".*")) {
-                            isRelevant = true;
-                            break;
-                        }
-                    } catch (PatternSyntaxException e) {
-                        logger.warn("Invalid ban_keyword pattern '{}': {}", keyword, e.getMessage());
-                    }
-                }
-                if (!isRelevant) {
-                    logger.warn("Skipping unrelated post: {} - {}", post.getString("date"), title);
-                    continue;
+                // Класифікація, завантаження, валідація та злиття йдуть конвеєром
+                PostPipeline pipeline = new PostPipeline(prop, bo, classifier, browserPool, scheduler, httpClient);
+                if (posts.isEmpty()) {
+                    logger.info("No new posts since last run");
+                } else {
+                    pipeline.run(posts);
                 }
 
-                // Визначаємо дію (блокувати чи розблокувати)
-                boolean block = true;
-                for (String keyword : unbanKeywords) {
-                    try {
-                        if (title.matches(".*" + keyword + ".*")) {
-                            block = false;
-                            break;
-                        }
-                    } catch (PatternSyntaxException e) {
-                        logger.warn("Invalid unban_keyword pattern '{}': {}", keyword, e.getMessage());
+                // Відмітку пересуваємо лише тоді, коли всі нові пости оброблено без збоїв
+                if (watermark != null) {
+                    if (pipeline.getFailedCount() == 0) {
+                        completedPosts = posts;
+                    } else {
+                        logger.warn("{} attachments failed, incremental state is not advanced", pipeline.getFailedCount());
                     }
                 }
-
-                // Обробляємо вкладення
-                JSONArray postAttachments = post.getJSONArray("attachments");
-                for (int j = 0; j < postAttachments.length(); j++) {
-                    JSONObject attachment = postAttachments.getJSONObject(j);
-                    String id = String.valueOf(attachment.getInt("id"));
-                    String mimeType = attachment.getString("mimeType");
-                    String fileName = attachment.getString("originalFileName");
-
-                    GetPrescript gp = new GetPrescript(prop, id, mimeType)
-                            .setOrigFileName(fileName)
-                            .getPrescriptFrom()
-                            .storePrescriptTo();
-
-                    // Оновлюємо дату файлу відповідно до post.date
-                    setFileDate(new File(gp.getFileName()), post.getString("date"));
-
-                    if (!mimeType.equalsIgnoreCase("text/plain")) {
-                        logger.info("{} {} {} {} \"{}\"",
-                                LocalDateTime.now(), post.getString("date"), block ? "+" : "-", id, fileName);
-                        continue;
-                    }
-
-                    for (String domain : gp.getBodyPrescript()) {
-                        if (domain.length() > 255) {
-                            logger.warn("Skipping domain due to invalid length: {}", domain);
-                            continue;
-                        }
-                        BlockedDomain bd = new BlockedDomain(domain, block, post.getString("date"));
-                        if (bo.addBlockedDomainName(bd)) {
-                            logger.info("{} {} [ {} \"{}\"]",
-                                    LocalDateTime.now(), bd, id, fileName);
-                        }
-                    }
-
-                    if (!gp.isLocalRead()) {
-                        try {
-                            Thread.sleep(1000 + (long) (Math.random() * 1000)); // 1-2 секунди
-                        } catch (InterruptedException e) {
-                            logger.error("Interrupted during delay: {}", e.getMessage(), e);
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                }
-                } catch (Exception e) {
-                    logger.error("Error processing post {}: {}", i, e.getMessage(), e);
-                }
+            } catch (InterruptedException e) {
+                logger.error("Interrupted while processing posts: {}", e.getMessage(), e);
+                Thread.currentThread().interrupt();
             }
 
             // Parse aggressor services
             try {
                 AggressorServicesParser parser = new AggressorServicesParser(prop, debug);
+                parser.setRetryPolicy(retryPolicy);
                 Set<BlockedDomain> aggressorDomains = parser.parse();
                 for (BlockedDomain bd : aggressorDomains) {
-                    bo.addBlockedDomainName(bd);
+                    bo.addBlockedDomainName(bd, "aggressor");
                 }
             } catch (Exception e) {
                 logger.error("Error in AggressorServicesParser: {}", e.getMessage(), e);
@@ -221,50 +165,31 @@ public class Cip_gov_ua_getter {
             // Parse NKEK.GOV.UA prescripts
             try {
                 PlaycityParser parserNkek = new PlaycityParser(prop, debug);
+                parserNkek.setRetryPolicy(retryPolicy);
                 Set<BlockedDomain> nkekDomains = parserNkek.parse();
                 for (BlockedDomain bd : nkekDomains) {
-                    bo.addBlockedDomainName(bd);
+                    bo.addBlockedDomainName(bd, "nkek");
                 }
             } catch (Exception e) {
                 logger.error("Error in PlaycityParser: {}", e.getMessage(), e);
             }
 
+            retryPolicy.logStats();
+            DomainValidatorUtil.logCacheStats();
+
             // Зберігаємо результати
             bo.storeState();
             logger.info("Successfully stored blocked domains state");
 
+            // Відмітка пересувається лише після того, як журнал і результат зафіксовано на диску
+            if (completedPosts != null) {
+                watermark.advance(completedPosts);
+                watermark.store(bo);
+            }
+
         } catch (IOException e) {
             logger.error("Failed to process articles: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to process articles", e);
-        } catch (JSONException e) {
-            logger.error("Failed to parse JSON: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to parse JSON", e);
-        }
-    }
-
-    /**
-     * Встановлює дату модифікації файлу на основі дати з поста. Нічого не
-     * робить, якщо файл недоступний або дата некоректна.
-     *
-     * @param file файл для оновлення
-     * @param dateStr дата у форматі ISO 8601 (наприклад,
-     * "2023-12-07T10:44:00Z")
-     */
-    private static void setFileDate(File file, String dateStr) {
-        if (!file.exists() || !file.canWrite()) {
-            logger.warn("Cannot set date for file {}: file does not exist or is not writable", file.getAbsolutePath());
-            return;
-        }
-
-        try {
-            LocalDateTime dateTime = LocalDateTime.parse(dateStr, ISO_FORMATTER);
-            long millis = dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(millis));
-            logger.debug("Set file date for {} to {}", file.getAbsolutePath(), dateStr);
-        } catch (DateTimeParseException e) {
-            logger.warn("Failed to parse date '{}' for file {}: {}", dateStr, file.getAbsolutePath(), e.getMessage());
-        } catch (IOException e) {
-            logger.warn("Failed to set date for file {}: {}", file.getAbsolutePath(), e.getMessage());
         }
     }
 }
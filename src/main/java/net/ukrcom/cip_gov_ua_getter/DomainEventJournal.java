@@ -0,0 +1,493 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Журнал подій щодо доменів лише з дописуванням у кінець. Кожна подія, що
+ * змінила стан переліку, записується як (домен, дія, дата, джерело) з
+ * контрольною сумою CRC32. Періодично стан стискається у знімок, де також
+ * зберігається позиція журналу, до якої він актуальний. Інкрементний запуск
+ * завантажує знімок і застосовує лише записи журналу після нього.
+ *
+ * Після кожного знімка журнал обрізається до нуля, а знімок переписується з
+ * позицією 0, тож журнал містить лише записи після останнього знімка і не
+ * росте між запусками. Якщо збій стався між обрізанням і перезаписом, знімок
+ * із позицією за кінцем журналу сам містить увесь стан і одразу
+ * виправляється під час відтворення.
+ *
+ * Запис у журнал завершується fsync під час {@link #commit}; обірваний або
+ * пошкоджений хвіст (наприклад, після збою живлення) виявляється за довжиною
+ * та CRC і відрізається під час наступного завантаження. Знімок пишеться у
+ * тимчасовий файл і атомарно переноситься.
+ *
+ * Журнал вмикає властивість journal (шлях до файлу, за замовчуванням
+ * порожньо — вимкнено). Знімок — journal_snapshot (за замовчуванням
+ * журнал із суфіксом .snapshot), частота знімків —
+ * journal_snapshot_interval (кількість записів, за замовчуванням 10000).
+ *
+ * Перевірка та перебудова знімка з журналу: java -cp
+ * cip_gov_ua_getter-3.2.0-all.jar net.ukrcom.cip_gov_ua_getter.DomainEventJournal
+ * verify|rebuild [cip.gov.ua.properties]
+ *
+ * @author olden
+ */
+public class DomainEventJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DomainEventJournal.class);
+    private static final int SNAPSHOT_MAGIC = 0x43475553; // "CGUS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte ACTION_UNBLOCK = 0;
+    private static final byte ACTION_BLOCK = 1;
+    private static final byte ACTION_RESET = 2;
+    // Запис довший за це вважається пошкодженим: домен до 255 символів, джерело коротке
+    private static final int MAX_RECORD_LENGTH = 4096;
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final int snapshotInterval;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream journalOut;
+    private DataOutputStream out;
+    private long recordsSinceSnapshot;
+    private long appended;
+    private boolean snapshotStale;
+
+    /**
+     * Результат проходу журналом.
+     */
+    private static final class Scan {
+
+        long records;
+        long resets;
+        long goodLength;
+        String damage;
+    }
+
+    /**
+     * Обробник записів журналу під час проходу.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+
+        void visit(byte action, long epochSecond, String domain, String source);
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public DomainEventJournal(Properties p) {
+        String journalStr = p.getProperty("journal", "").trim();
+        this.journalFile = journalStr.isEmpty() ? null : Paths.get(journalStr);
+        String snapshotStr = p.getProperty("journal_snapshot", "").trim();
+        this.snapshotFile = snapshotStr.isEmpty()
+                ? (journalStr.isEmpty() ? null : Paths.get(journalStr + ".snapshot"))
+                : Paths.get(snapshotStr);
+        int parsedInterval = 10000;
+        try {
+            parsedInterval = Integer.parseInt(p.getProperty("journal_snapshot_interval", "10000").trim());
+            if (parsedInterval < 1) {
+                logger.warn("Invalid journal_snapshot_interval value, using default: 10000");
+                parsedInterval = 10000;
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid journal_snapshot_interval value, using default: 10000");
+        }
+        this.snapshotInterval = parsedInterval;
+    }
+
+    /**
+     * Чи увімкнено журнал.
+     *
+     * @return true, якщо задано властивість journal
+     */
+    public boolean isEnabled() {
+        return journalFile != null;
+    }
+
+    /**
+     * Чи є збережений стан: журнал або знімок.
+     *
+     * @return true, якщо є з чого відновлюватися
+     */
+    public boolean hasState() {
+        return Files.isRegularFile(journalFile) || Files.isRegularFile(snapshotFile);
+    }
+
+    /**
+     * Відновлює стан зі знімка та записів журналу після нього. Пошкоджений
+     * хвіст журналу відрізається.
+     *
+     * @param store сховище, що заповнюється з нуля
+     * @throws IOException у разі помилок читання
+     */
+    public void replay(DomainEventStore store) throws IOException {
+        store.clear();
+        long journalLength = Files.isRegularFile(journalFile) ? Files.size(journalFile) : 0;
+        long offset = 0;
+        if (Files.isRegularFile(snapshotFile)) {
+            try {
+                offset = readSnapshot(snapshotFile, store);
+                if (offset > journalLength) {
+                    // Журнал обрізано після знімка: знімок сам містить увесь стан
+                    logger.warn("Snapshot {} covers {} bytes but journal {} has only {}, using snapshot alone",
+                            snapshotFile, offset, journalFile, journalLength);
+                    offset = journalLength;
+                    writeSnapshot(snapshotFile, store, offset);
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring damaged snapshot {}, replaying whole journal: {}", snapshotFile, e.getMessage());
+                store.clear();
+                offset = 0;
+                snapshotStale = true;
+            }
+        }
+        int fromSnapshot = store.size();
+        Scan scan = scan(journalFile, offset, Long.MAX_VALUE, (action, epochSecond, domain, source) -> apply(store, action, epochSecond, domain));
+        if (scan.damage != null) {
+            logger.warn("Journal {} is damaged at byte {} ({}), truncating", journalFile, scan.goodLength, scan.damage);
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                channel.truncate(scan.goodLength);
+                channel.force(true);
+            }
+        }
+        recordsSinceSnapshot = scan.records;
+        logger.info("Replayed journal {}: {} domains from snapshot, {} records after it, {} domains now",
+                journalFile, fromSnapshot, scan.records, store.size());
+    }
+
+    /**
+     * Записує маркер скидання: під час відтворення все, що було до нього,
+     * відкидається. Використовується при повній синхронізації.
+     */
+    public void reset() {
+        write(ACTION_RESET, System.currentTimeMillis() / 1000, "", "");
+        snapshotStale = true;
+    }
+
+    /**
+     * Дописує подію в журнал. На диск вона гарантовано потрапляє після
+     * {@link #commit}.
+     *
+     * @param domain ім'я домену
+     * @param packed подія, упакована {@link DomainEventStore#pack}
+     * @param source джерело події (вкладення, файл, парсер)
+     */
+    public void append(String domain, long packed, String source) {
+        write(DomainEventStore.isBlocked(packed) ? ACTION_BLOCK : ACTION_UNBLOCK,
+                DomainEventStore.epochSecondOf(packed), domain, source);
+    }
+
+    private void write(byte action, long epochSecond, String domain, String source) {
+        try {
+            if (out == null) {
+                journalOut = new FileOutputStream(journalFile.toFile(), true);
+                out = new DataOutputStream(new BufferedOutputStream(journalOut));
+            }
+            record.reset();
+            DataOutputStream payload = new DataOutputStream(record);
+            payload.writeByte(action);
+            payload.writeLong(epochSecond);
+            payload.writeUTF(domain);
+            payload.writeUTF(source);
+            crc.reset();
+            crc.update(record.toByteArray());
+            out.writeInt(record.size());
+            record.writeTo(out);
+            out.writeInt((int) crc.getValue());
+            appended++;
+            recordsSinceSnapshot++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to journal " + journalFile, e);
+        }
+    }
+
+    /**
+     * Скидає дописані записи на диск (fsync) і, якщо після останнього знімка
+     * накопичилося journal_snapshot_interval записів або був скинутий стан,
+     * пише новий знімок.
+     *
+     * @param store поточний стан, що відповідає журналу
+     * @throws IOException у разі помилок запису
+     */
+    public void commit(DomainEventStore store) throws IOException {
+        if (out != null) {
+            out.flush();
+            journalOut.getFD().sync();
+            out.close();
+            out = null;
+            journalOut = null;
+        }
+        if (snapshotStale || recordsSinceSnapshot >= snapshotInterval) {
+            long offset = Files.isRegularFile(journalFile) ? Files.size(journalFile) : 0;
+            writeSnapshot(snapshotFile, store, offset);
+            if (offset > 0) {
+                compact(store);
+            }
+            recordsSinceSnapshot = 0;
+            snapshotStale = false;
+        }
+        logger.info("Journal {}: {} records appended in this run", journalFile, appended);
+    }
+
+    /**
+     * Обрізає журнал, увесь вміст якого вже є у знімку, і переписує знімок із
+     * позицією 0.
+     */
+    private void compact(DomainEventStore store) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+        writeSnapshot(snapshotFile, store, 0);
+        logger.info("Compacted journal {} into snapshot {}", journalFile, snapshotFile);
+    }
+
+    private static void apply(DomainEventStore store, byte action, long epochSecond, String domain) {
+        if (action == ACTION_RESET) {
+            store.clear();
+        } else {
+            store.add(domain, DomainEventStore.pack(epochSecond, action == ACTION_BLOCK));
+        }
+    }
+
+    /**
+     * Проходить записами журналу від позиції from до позиції to, кінця файлу
+     * або першого пошкодженого запису.
+     */
+    private static Scan scan(Path file, long from, long to, RecordVisitor visitor) throws IOException {
+        Scan scan = new Scan();
+        scan.goodLength = from;
+        if (!Files.isRegularFile(file)) {
+            return scan;
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream raw = Files.newInputStream(file)) {
+            raw.skipNBytes(from);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(raw));
+            while (scan.goodLength < to) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return scan;
+                }
+                try {
+                    if (length < 11 || length > MAX_RECORD_LENGTH) {
+                        scan.damage = "invalid record length " + length;
+                        return scan;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    int stored = in.readInt();
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != stored) {
+                        scan.damage = "CRC mismatch";
+                        return scan;
+                    }
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte action = record.readByte();
+                    long epochSecond = record.readLong();
+                    String domain = record.readUTF();
+                    String source = record.readUTF();
+                    if (action == ACTION_RESET) {
+                        scan.resets++;
+                    }
+                    visitor.visit(action, epochSecond, domain, source);
+                } catch (EOFException e) {
+                    scan.damage = "truncated record";
+                    return scan;
+                }
+                scan.records++;
+                scan.goodLength += 4 + length + 4;
+            }
+            return scan;
+        }
+    }
+
+    /**
+     * Читає знімок у сховище.
+     *
+     * @return позиція журналу, до якої знімок актуальний
+     */
+    private static long readSnapshot(Path file, DomainEventStore store) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("unknown snapshot format");
+            }
+            long offset = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String domain = in.readUTF();
+                store.add(domain, in.readLong());
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readInt() != (int) expected) {
+                throw new IOException("CRC mismatch");
+            }
+            if (in.read() != -1) {
+                throw new IOException("trailing data");
+            }
+            return offset;
+        }
+    }
+
+    private static void writeSnapshot(Path file, DomainEventStore store, long offset) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+            DataOutputStream snapshot = new DataOutputStream(checked);
+            snapshot.writeInt(SNAPSHOT_MAGIC);
+            snapshot.writeInt(SNAPSHOT_VERSION);
+            snapshot.writeLong(offset);
+            snapshot.writeInt(store.size());
+            for (int id = 0; id < store.size(); id++) {
+                snapshot.writeUTF(store.nameOf(id));
+                snapshot.writeLong(store.latestOf(id));
+            }
+            snapshot.writeInt((int) checked.getChecksum().getValue());
+            snapshot.flush();
+            fileOut.getFD().sync();
+        }
+        StreamingDownload.moveAtomically(temp, file);
+        logger.info("Stored journal snapshot {}: {} domains, journal offset {}", file, store.size(), offset);
+    }
+
+    /**
+     * Перевіряє журнал і знімок: цілісність записів, контрольну суму знімка
+     * і те, що позиція знімка припадає на межу запису в межах журналу.
+     * Записи до позиції знімка вже стиснуті в нього, тож вміст знімка з
+     * журналом не порівнюється.
+     *
+     * @return true, якщо проблем не знайдено
+     * @throws IOException у разі помилок читання
+     */
+    public boolean verify() throws IOException {
+        boolean ok = true;
+        Scan whole = scan(journalFile, 0, Long.MAX_VALUE, (action, epochSecond, domain, source) -> {
+        });
+        logger.info("Journal {}: {} records, {} resets, {} valid bytes",
+                journalFile, whole.records, whole.resets, whole.goodLength);
+        if (whole.damage != null) {
+            logger.warn("Journal {} is damaged at byte {}: {}", journalFile, whole.goodLength, whole.damage);
+            ok = false;
+        }
+        if (!Files.isRegularFile(snapshotFile)) {
+            logger.info("No snapshot {}", snapshotFile);
+            return ok;
+        }
+        DomainEventStore fromSnapshot = new DomainEventStore();
+        long offset;
+        try {
+            offset = readSnapshot(snapshotFile, fromSnapshot);
+        } catch (IOException e) {
+            logger.warn("Snapshot {} is damaged: {}", snapshotFile, e.getMessage());
+            return false;
+        }
+        logger.info("Snapshot {}: {} domains, journal offset {}", snapshotFile, fromSnapshot.size(), offset);
+        if (offset > whole.goodLength) {
+            logger.warn("Snapshot offset {} is beyond the valid journal length {}", offset, whole.goodLength);
+            return false;
+        }
+        Scan prefix = scan(journalFile, 0, offset, (action, epochSecond, domain, source) -> {
+        });
+        if (prefix.goodLength != offset) {
+            logger.warn("Snapshot offset {} is not at a record boundary", offset);
+            return false;
+        }
+        return ok;
+    }
+
+    /**
+     * Перебудовує знімок: відтворює знімок і журнал після нього або, якщо
+     * знімок пошкоджено, весь журнал із початку. Пошкоджений хвіст журналу
+     * відрізається.
+     *
+     * @throws IOException у разі помилок читання чи запису
+     */
+    public void rebuild() throws IOException {
+        DomainEventStore store = new DomainEventStore();
+        replay(store);
+        long offset = Files.isRegularFile(journalFile) ? Files.size(journalFile) : 0;
+        writeSnapshot(snapshotFile, store, offset);
+        logger.info("Rebuilt snapshot {}: {} domains", snapshotFile, store.size());
+    }
+
+    /**
+     * Точка входу для перевірки (verify) та перебудови (rebuild) знімка.
+     * Код завершення: 0 — успіх, 1 — перевірка знайшла проблеми, 2 —
+     * неправильний виклик.
+     *
+     * @param args verify|rebuild [файл властивостей]
+     * @throws IOException у разі помилок читання чи запису
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !(args[0].equals("verify") || args[0].equals("rebuild"))) {
+            logger.error("Usage: DomainEventJournal verify|rebuild [cip.gov.ua.properties]");
+            System.exit(2);
+        }
+        Properties prop = new Properties();
+        String configPath = args.length > 1 ? args[1] : "cip.gov.ua.properties";
+        try (InputStreamReader input = new InputStreamReader(new FileInputStream(configPath), StandardCharsets.UTF_8)) {
+            prop.load(input);
+        }
+        DomainEventJournal journal = new DomainEventJournal(prop);
+        if (!journal.isEnabled()) {
+            logger.error("Property journal is not set in {}", configPath);
+            System.exit(2);
+        }
+        if (args[0].equals("verify")) {
+            if (!journal.verify()) {
+                logger.error("Verification FAILED");
+                System.exit(1);
+            }
+            logger.info("Verification OK");
+        } else {
+            journal.rebuild();
+        }
+    }
+}
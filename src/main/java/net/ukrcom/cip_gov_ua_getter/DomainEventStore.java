@@ -0,0 +1,296 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Компактне сховище подій щодо доменів на примітивних масивах.
+ *
+ * Імена доменів інтернуються як байтові масиви в одному спільному буфері
+ * (після IDN.toASCII вони ASCII) і отримують цілий ідентифікатор. Для
+ * кожного домену зберігається лише остання подія, упакована в один long:
+ * секунди епохи, зсунуті на біт, і ознака блокування в молодшому біті.
+ * Порівняння упакованих значень як long дає той самий порядок, що й
+ * {@link BlockedDomainComparator} для одного домену: спершу дата, а за
+ * однакової дати блокування після розблокування.
+ *
+ * Замість кількох об'єктів на подію (BlockedDomain, String, LocalDateTime)
+ * сховище тримає близько 20 байтів на домен плюс байти самого імені.
+ *
+ * @author olden
+ */
+public class DomainEventStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] names = new byte[INITIAL_CAPACITY * 16];
+    private int namesLength;
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+    private long[] latest = new long[INITIAL_CAPACITY];
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int size;
+    private long events;
+
+    /**
+     * Пакує подію в одне значення long.
+     *
+     * @param epochSecond секунди від початку епохи (UTC)
+     * @param blocked true для блокування
+     * @return упаковане значення
+     */
+    public static long pack(long epochSecond, boolean blocked) {
+        return epochSecond << 1 | (blocked ? 1 : 0);
+    }
+
+    /**
+     * Пакує подію з датою LocalDateTime. Дата трактується як UTC, долі
+     * секунди відкидаються.
+     *
+     * @param dateTime дата події
+     * @param blocked true для блокування
+     * @return упаковане значення
+     */
+    public static long pack(LocalDateTime dateTime, boolean blocked) {
+        return pack(dateTime.toEpochSecond(ZoneOffset.UTC), blocked);
+    }
+
+    public static long epochSecondOf(long packed) {
+        return packed >> 1;
+    }
+
+    public static boolean isBlocked(long packed) {
+        return (packed & 1) != 0;
+    }
+
+    /**
+     * Додає подію щодо домену. Зберігається лише найновіша подія.
+     *
+     * @param domain ім'я домену
+     * @param packed подія, упакована {@link #pack}
+     * @return true, якщо подія стала останньою для домену
+     */
+    public boolean add(String domain, long packed) {
+        events++;
+        byte[] bytes = domain.getBytes(StandardCharsets.UTF_8);
+        int slot = slotOf(bytes);
+        if (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (packed > latest[id]) {
+                latest[id] = packed;
+                return true;
+            }
+            return false;
+        }
+        int id = append(bytes, packed);
+        table[slot] = id + 1;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Ідентифікатор домену.
+     *
+     * @param domain ім'я домену
+     * @return ідентифікатор або -1, якщо домену немає
+     */
+    public int idOf(String domain) {
+        return table[slotOf(domain.getBytes(StandardCharsets.UTF_8))] - 1;
+    }
+
+    /**
+     * Слот таблиці з цим іменем або порожній слот, куди його слід вставити.
+     */
+    private int slotOf(byte[] bytes) {
+        int mask = table.length - 1;
+        int slot = hash(bytes, 0, bytes.length) & mask;
+        while (table[slot] != 0 && !equalsName(table[slot] - 1, bytes)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int append(byte[] bytes, long packed) {
+        if (size == latest.length) {
+            latest = Arrays.copyOf(latest, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        if (namesLength + bytes.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, names, namesLength, bytes.length);
+        namesLength += bytes.length;
+        int id = size++;
+        offsets[id + 1] = namesLength;
+        latest[id] = packed;
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] newTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(names, offsets[id], offsets[id + 1]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+    }
+
+    private boolean equalsName(int id, byte[] bytes) {
+        int from = offsets[id];
+        return offsets[id + 1] - from == bytes.length
+                && Arrays.equals(names, from, from + bytes.length, bytes, 0, bytes.length);
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // Перемішуємо біти, бо таблиця індексується молодшими бітами
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Видаляє всі домени й події.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        namesLength = 0;
+        size = 0;
+        events = 0;
+    }
+
+    /**
+     * Кількість різних доменів.
+     *
+     * @return кількість доменів
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Кількість доданих подій, включно з перекритими.
+     *
+     * @return кількість подій
+     */
+    public long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Остання подія домену.
+     *
+     * @param id ідентифікатор домену
+     * @return упакована подія
+     */
+    public long latestOf(int id) {
+        return latest[id];
+    }
+
+    /**
+     * Ім'я домену за ідентифікатором.
+     *
+     * @param id ідентифікатор домену
+     * @return ім'я домену
+     */
+    public String nameOf(int id) {
+        return new String(names, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Примітивний компаратор імен: побайтове порівняння без знака, що для
+     * ASCII збігається з String.compareTo.
+     *
+     * @param a ідентифікатор першого домену
+     * @param b ідентифікатор другого домену
+     * @return від'ємне, нуль чи додатне значення
+     */
+    public int compareNames(int a, int b) {
+        return Arrays.compareUnsigned(names, offsets[a], offsets[a + 1], names, offsets[b], offsets[b + 1]);
+    }
+
+    /**
+     * Ідентифікатори заблокованих доменів, упорядковані за іменем.
+     *
+     * @return відсортовані ідентифікатори
+     */
+    public int[] sortedBlockedIds() {
+        int count = 0;
+        int[] ids = new int[size];
+        for (int id = 0; id < size; id++) {
+            if (isBlocked(latest[id])) {
+                ids[count++] = id;
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        sort(ids, 0, count - 1);
+        return ids;
+    }
+
+    /**
+     * Швидке сортування ідентифікаторів за іменем без упаковки в Integer.
+     */
+    private void sort(int[] ids, int lo, int hi) {
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i <= hi; i++) {
+                    int v = ids[i];
+                    int j = i - 1;
+                    while (j >= lo && compareNames(ids[j], v) > 0) {
+                        ids[j + 1] = ids[j];
+                        j--;
+                    }
+                    ids[j + 1] = v;
+                }
+                return;
+            }
+            int pivot = ids[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compareNames(ids[i], pivot) < 0) {
+                    i++;
+                }
+                while (compareNames(ids[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = ids[i];
+                    ids[i++] = ids[j];
+                    ids[j--] = t;
+                }
+            }
+            // Рекурсія по меншій частині, цикл по більшій — глибина стеку O(log n)
+            if (j - lo < hi - i) {
+                sort(ids, lo, j);
+                lo = i;
+            } else {
+                sort(ids, i, hi);
+                hi = j;
+            }
+        }
+    }
+}
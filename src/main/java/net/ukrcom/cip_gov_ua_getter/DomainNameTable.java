@@ -0,0 +1,246 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.validator.routines.DomainValidator;
+
+/**
+ * Незмінна таблиця TLD і перевірка доменних імен для гарячого шляху
+ * валідації. Дає ті самі відповіді, що й {@link DomainValidator#isValid} та
+ * {@link DomainValidator#isValidTld} для ASCII-імен, але без регулярних
+ * виразів і без повторних пошуків по масивах TLD.
+ *
+ * Таблиця будується один раз для кожного екземпляра DomainValidator: з
+ * усіх списків commons-validator (загальні, національні, інфраструктурні,
+ * локальні та їх доповнення) відбираються TLD, які приймає сам валідатор.
+ * Мітки перевіряються за один прохід по рядку, а ASCII-імена не проходять
+ * через IDN.toASCII.
+ *
+ * @author olden
+ */
+public final class DomainNameTable {
+
+    private static final int MAX_DOMAIN_LENGTH = 253;
+    private static final int MAX_LABEL_LENGTH = 63;
+    private static final Map<DomainValidator, DomainNameTable> TABLES = new ConcurrentHashMap<>();
+
+    private final Set<String> tlds;
+    private final boolean allowLocal;
+    private final String fingerprint;
+
+    private DomainNameTable(DomainValidator validator) {
+        Set<String> candidates = new HashSet<>();
+        for (DomainValidator.ArrayType type : DomainValidator.ArrayType.values()) {
+            addAll(candidates, DomainValidator.getTLDEntries(type));
+            try {
+                addAll(candidates, validator.getOverrides(type));
+            } catch (IllegalArgumentException e) {
+                // Для незмінних списків доповнень не буває
+            }
+        }
+        Set<String> valid = new HashSet<>();
+        for (String tld : candidates) {
+            if (validator.isValidTld(tld)) {
+                valid.add(tld);
+            }
+        }
+        this.tlds = Set.copyOf(valid);
+        this.allowLocal = validator.isAllowLocal();
+        this.fingerprint = fingerprintOf(this.tlds, this.allowLocal);
+    }
+
+    private static String fingerprintOf(Set<String> tlds, boolean allowLocal) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((allowLocal ? "local" : "nolocal").getBytes(StandardCharsets.UTF_8));
+            for (String tld : new TreeSet<>(tlds)) {
+                digest.update((byte) '\n');
+                digest.update(tld.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void addAll(Set<String> set, String[] entries) {
+        for (String entry : entries) {
+            set.add(entry.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Повертає таблицю для валідатора, будуючи її під час першого звернення.
+     *
+     * @param validator валідатор, відповіді якого відтворює таблиця
+     * @return таблиця
+     */
+    public static DomainNameTable of(DomainValidator validator) {
+        return TABLES.computeIfAbsent(validator, DomainNameTable::new);
+    }
+
+    /**
+     * SHA-256 вмісту таблиці: відсортованих TLD і ознаки allowLocal. Змінюється
+     * разом зі списком TLD, навіть якщо їх кількість та сама.
+     *
+     * @return відбиток таблиці в hex
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Кількість TLD у таблиці.
+     *
+     * @return кількість TLD
+     */
+    public int size() {
+        return tlds.size();
+    }
+
+    /**
+     * Те саме, що IDN.toASCII(domain, IDN.ALLOW_UNASSIGNED), але ASCII-імена
+     * повертаються як є, лише з перевіркою довжини міток.
+     *
+     * @param domain доменне ім'я
+     * @return ім'я в ASCII (Punycode)
+     * @throws IllegalArgumentException якщо мітка довша за 63 символи або
+     * ім'я не можна перетворити
+     */
+    public static String toAscii(String domain) {
+        if (!isAscii(domain)) {
+            return IDN.toASCII(domain, IDN.ALLOW_UNASSIGNED);
+        }
+        int labelStart = 0;
+        for (int i = 0; i <= domain.length(); i++) {
+            if (i == domain.length() || domain.charAt(i) == '.') {
+                if (i - labelStart > MAX_LABEL_LENGTH) {
+                    throw new IllegalArgumentException("The label in the input is too long");
+                }
+                labelStart = i + 1;
+            }
+        }
+        return domain;
+    }
+
+    /**
+     * Чи складається рядок лише з ASCII-символів.
+     *
+     * @param s рядок
+     * @return true, якщо всі символи ASCII
+     */
+    public static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Перевіряє ASCII-ім'я так само, як DomainValidator.isValid: мітки по
+     * 1-63 символи з літер, цифр і дефісів, без дефіса на краях, TLD
+     * починається з літери і є в таблиці. Якщо дозволено локальні імена,
+     * приймається й одна мітка без крапок.
+     *
+     * @param domain ім'я в ASCII
+     * @return true, якщо ім'я валідне
+     */
+    public boolean isValid(String domain) {
+        if (domain == null || domain.length() > MAX_DOMAIN_LENGTH) {
+            return false;
+        }
+        int end = domain.length();
+        boolean trailingDot = end > 0 && domain.charAt(end - 1) == '.';
+        if (trailingDot) {
+            end--;
+        }
+        int labels = 0;
+        int labelStart = 0;
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? domain.charAt(i) : '.';
+            if (c == '.') {
+                int length = i - labelStart;
+                if (length == 0 || length > MAX_LABEL_LENGTH || domain.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labels++;
+                labelStart = i + 1;
+            } else if (c == '-') {
+                if (i == labelStart) {
+                    return false;
+                }
+            } else if (!isAlnum(c)) {
+                return false;
+            }
+        }
+        if (labels == 1) {
+            return allowLocal && !trailingDot;
+        }
+        int tldStart = domain.lastIndexOf('.', end - 1) + 1;
+        char first = domain.charAt(tldStart);
+        return (first >= 'a' && first <= 'z' || first >= 'A' && first <= 'Z')
+                && containsTld(domain.substring(tldStart, end));
+    }
+
+    /**
+     * Те саме, що DomainValidator.isValidTld: початкова крапка і регістр не
+     * враховуються.
+     *
+     * @param tld домен верхнього рівня, з крапкою або без
+     * @return true, якщо TLD відомий валідатору
+     */
+    public boolean isValidTld(String tld) {
+        if (tld == null) {
+            return false;
+        }
+        String key = tld.startsWith(".") ? tld.substring(1) : tld;
+        if (!isAscii(key)) {
+            try {
+                key = IDN.toASCII(key, IDN.ALLOW_UNASSIGNED);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return containsTld(key);
+    }
+
+    private boolean containsTld(String tld) {
+        for (int i = 0; i < tld.length(); i++) {
+            char c = tld.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return tlds.contains(tld.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return tlds.contains(tld);
+    }
+
+    private static boolean isAlnum(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+    }
+}
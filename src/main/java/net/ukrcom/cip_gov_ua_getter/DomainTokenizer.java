@@ -0,0 +1,231 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+/**
+ * Однопрохідний розбір рядка на кандидати в домени, що дає ті самі
+ * результати, що й попередній ланцюжок trim ⮕ видалення протоколу ⮕
+ * replaceAll("\\s+", "") ⮕ toLowerCase ⮕ пошук шаблоном
+ * [a-zA-Z0-9\p{L}\p{M}*-]+(?:\.[a-zA-Z0-9\p{L}\p{M}*-]+)+.
+ *
+ * Пробільні символи під час сканування просто пропускаються, шлях, порт і
+ * параметри запиту відсікаються самі, бо '/', ':' і '?' не входять до
+ * символів домену. Для ASCII-рядків малі літери отримуються під час
+ * копіювання кандидата, тож проміжні рядки не будуються. Рядки з
+ * не-ASCII-символами нормалізуються цілком через String.toLowerCase, бо
+ * перетворення регістру для Unicode залежить від контексту.
+ *
+ * Використання: while ((domain = tokenizer.next()) != null) { ... }
+ *
+ * @author olden
+ */
+public class DomainTokenizer {
+
+    private static final String[] SCHEMES = {"http://", "https://", "ftp://"};
+    // У турецькій і азербайджанській локалях 'I' не переходить в 'i'
+    private static final boolean ASCII_LOWERCASE_SAFE = "I".toLowerCase().equals("i");
+
+    private final String s;
+    private final int end;
+    private final boolean lowercase;
+    private int pos;
+
+    /**
+     * Конструктор класа.
+     *
+     * @param line - вхідний рядок
+     */
+    public DomainTokenizer(String line) {
+        int from = 0;
+        int to = line.length();
+        // Те саме, що trim()
+        while (from < to && line.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && line.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        from += schemeLength(line, from, to);
+
+        if (ASCII_LOWERCASE_SAFE && isAscii(line, from, to)) {
+            this.s = line;
+            this.pos = from;
+            this.end = to;
+            this.lowercase = true;
+        } else {
+            StringBuilder sb = new StringBuilder(to - from);
+            for (int i = from; i < to; i++) {
+                char c = line.charAt(i);
+                if (!isWhitespace(c)) {
+                    sb.append(c);
+                }
+            }
+            this.s = sb.toString().toLowerCase();
+            this.pos = 0;
+            this.end = this.s.length();
+            this.lowercase = false;
+        }
+    }
+
+    /**
+     * Повертає наступного кандидата в домени.
+     *
+     * @return кандидат у нижньому регістрі без пробілів або null, якщо рядок
+     * закінчився
+     */
+    public String next() {
+        while (true) {
+            pos = skipWhitespace(pos);
+            if (pos >= end) {
+                return null;
+            }
+            if (!isDomainChar(pos)) {
+                pos += Character.charCount(s.codePointAt(pos));
+                continue;
+            }
+            int start = pos;
+            int runEnd = runEnd(pos);
+            int tokenEnd = runEnd;
+            int labels = 1;
+            while (true) {
+                int dot = skipWhitespace(tokenEnd);
+                if (dot >= end || s.charAt(dot) != '.') {
+                    break;
+                }
+                int label = skipWhitespace(dot + 1);
+                if (label >= end || !isDomainChar(label)) {
+                    break;
+                }
+                tokenEnd = runEnd(label);
+                labels++;
+            }
+            if (labels > 1) {
+                pos = tokenEnd;
+                return copy(start, tokenEnd);
+            }
+            pos = runEnd;
+        }
+    }
+
+    /**
+     * Кінець послідовності символів домену, що починається з from (пробіли
+     * всередині пропускаються).
+     */
+    private int runEnd(int from) {
+        int i = from;
+        int last = from;
+        while (true) {
+            i = skipWhitespace(i);
+            if (i >= end || !isDomainChar(i)) {
+                return last;
+            }
+            i += Character.charCount(s.codePointAt(i));
+            last = i;
+        }
+    }
+
+    private String copy(int from, int to) {
+        boolean clean = true;
+        for (int i = from; i < to && clean; i++) {
+            char c = s.charAt(i);
+            clean = !isWhitespace(c) && !(lowercase && c >= 'A' && c <= 'Z');
+        }
+        if (clean) {
+            return s.substring(from, to);
+        }
+        char[] buf = new char[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (isWhitespace(c)) {
+                continue;
+            }
+            buf[n++] = lowercase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return new String(buf, 0, n);
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < end && isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Символ домену: a-z, A-Z, 0-9, '-', '*', Unicode-літера або діакритичний
+     * знак.
+     */
+    private boolean isDomainChar(int i) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '*';
+        }
+        int cp = s.codePointAt(i);
+        return switch (Character.getType(cp)) {
+            case Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER, Character.TITLECASE_LETTER,
+                    Character.MODIFIER_LETTER, Character.OTHER_LETTER,
+                    Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK ->
+                true;
+            default ->
+                false;
+        };
+    }
+
+    /**
+     * Пробільні символи в сенсі \s регулярних виразів Java.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAscii(String line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Довжина протоколу на початку рядка; регістр ASCII-літер не враховується,
+     * як у (?i)^(https?://|ftp://).
+     */
+    private static int schemeLength(String line, int from, int to) {
+        for (String scheme : SCHEMES) {
+            int n = scheme.length();
+            if (to - from < n) {
+                continue;
+            }
+            int i = 0;
+            while (i < n) {
+                char c = line.charAt(from + i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != scheme.charAt(i)) {
+                    break;
+                }
+                i++;
+            }
+            if (i == n) {
+                return n;
+            }
+        }
+        return 0;
+    }
+}
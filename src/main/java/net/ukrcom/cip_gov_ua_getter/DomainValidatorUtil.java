@@ -20,43 +20,56 @@ import org.apache.commons.validator.routines.DomainValidator;
 import org.apache.commons.validator.routines.InetAddressValidator;
 import org.slf4j.Logger;
 
-import java.net.IDN;
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.slf4j.LoggerFactory;
 
 public class DomainValidatorUtil {
 
-    private static final ConcurrentHashMap<String, String> SKELETON_CACHE = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, Boolean> TLD_CACHE = new ConcurrentHashMap<>();
-    // Регулярний вираз для виділення валідних доменів, включаючи повну підтримку Unicode і подвійних дефісів
-    /*
-        Розбір DOMAIN_CLEAN_PATTERN
-        1. [a-zA-Z0-9\\p{L}\\p{M}*-]+
-           - Матчує першу частину домену (до крапки), дозволяючи дефіси.
-           - [a-zA-Z0-9\\p{L}\\p{M}*-]: Символьний клас:
-             - a-zA-Z: Латинські літери.
-             - 0-9: Цифри.
-             - \\p{L}: Unicode-літери (кирилиця, китайські ієрогліфи тощо).
-             - \\p{M}*: Нуль або більше діакритичних знаків.
-             - -: Дефіс (дозволяє --).
-           - +: Один або більше символів.
-           - Приклад: nasepravda, xn--b1akbpgy3fwa, приклад.
-
-        2. (?:\\.[a-zA-Z0-9\\p{L}\\p{M}*-]+)+
-           - Матчує одну або більше частин після крапки (TLD або багаторівневий домен).
-           - \\.: Буквальна крапка.
-           - [a-zA-Z0-9\\p{L}\\p{M}*-]+: Символьний клас, як вище.
-           - +: Одна або більше груп із крапкою.
-           - Приклад: .cz, .xn--p1acf, .co.uk.
+    private static final Logger LOGGER = LoggerFactory.getLogger(DomainValidatorUtil.class);
+    private static final int DEFAULT_SKELETON_CACHE_SIZE = 10_000;
+
+    // Обмежений кеш: пам'ять не зростає разом із кількістю різних доменів за час роботи
+    private static volatile BoundedCache<String, String> SKELETON_CACHE
+            = new BoundedCache<>("Skeleton", DEFAULT_SKELETON_CACHE_SIZE);
+
+    /**
+     * Задає місткість кешу гомогліфів (skeleton_cache_size). Викликається
+     * один раз під час запуску, до валідації.
+     *
+     * @param p - об'єкт властивостей
      */
-    private static final Pattern DOMAIN_CLEAN_PATTERN = Pattern.compile(
-            "[a-zA-Z0-9\\p{L}\\p{M}*-]+"
-            + "(?:\\.[a-zA-Z0-9\\p{L}\\p{M}*-]+)+"
-    );
+    public static void configure(Properties p) {
+        SKELETON_CACHE = new BoundedCache<>("Skeleton",
+                parseCapacity(p, "skeleton_cache_size", DEFAULT_SKELETON_CACHE_SIZE));
+    }
+
+    private static int parseCapacity(Properties p, String key, int def) {
+        try {
+            return Math.max(1, Integer.parseInt(p.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
+
+    /**
+     * Кеш скелетів гомогліфів, для статистики.
+     *
+     * @return кеш
+     */
+    public static BoundedCache<String, String> getSkeletonCache() {
+        return SKELETON_CACHE;
+    }
+
+    /**
+     * Виводить статистику кешу.
+     */
+    public static void logCacheStats() {
+        LOGGER.info("{}", SKELETON_CACHE);
+    }
 
     public static Set<String> validateDomain(String rawDomain, String[] serviceSubdomains, String sourceDomain,
             DomainValidator domainValidator, InetAddressValidator ipValidator,
@@ -65,20 +78,15 @@ public class DomainValidatorUtil {
         Set<String> validDomains = new HashSet<>();
 
         try {
-            // Очищаємо вхідну строку від протоколів і пробілів
-            String cleanedInput = rawDomain
-                    .trim()
-                    .replaceAll("(?i)^(https?://|ftp://)", "") // Видаляємо протоколи
-                    .replaceAll("\\s+", "") // Видаляємо пробіли
-                    .toLowerCase();
-
-            // Витягуємо всі валідні домени зі строки
-            Matcher matcher = DOMAIN_CLEAN_PATTERN.matcher(cleanedInput);
+            // Витягуємо всі кандидати в домени зі строки за один прохід: протоколи,
+            // пробіли, шляхи, порти й параметри відкидаються, регістр знижується
+            DomainTokenizer tokenizer = new DomainTokenizer(rawDomain);
+            DomainNameTable table = DomainNameTable.of(domainValidator);
             boolean found = false;
+            String domain;
 
-            while (matcher.find()) {
+            while ((domain = tokenizer.next()) != null) {
                 found = true;
-                String domain = matcher.group();
                 logger.debug("Cleaned domain: {} → {}", rawDomain, domain);
 
                 // Перевірка на порожній домен або надмірну довжину
@@ -89,48 +97,35 @@ public class DomainValidatorUtil {
 
                 // Видаляємо субдомени зі списку serviceSubdomains
                 for (String service : serviceSubdomains) {
-                    if (domain.startsWith(service + ".")) {
+                    if (domain.length() > service.length() && domain.startsWith(service)
+                            && domain.charAt(service.length()) == '.') {
                         domain = domain.substring(service.length() + 1);
                         break;
                     }
                 }
 
-                // Видаляємо шляхи, порти, параметри
-                int endIndex = domain.indexOf("/");
-                if (endIndex != -1) {
-                    domain = domain.substring(0, endIndex);
-                }
-                endIndex = domain.indexOf(":");
-                if (endIndex != -1) {
-                    domain = domain.substring(0, endIndex);
-                }
-                endIndex = domain.indexOf("?");
-                if (endIndex != -1) {
-                    domain = domain.substring(0, endIndex);
-                }
-
                 // Пропускаємо sourceDomain, якщо він є
                 if (sourceDomain != null && domain.equals(sourceDomain)) {
                     logger.warn("Skipping source domain: {}", domain);
                     continue;
                 }
 
-                // Конвертуємо в Punycode
-                String idnDomain = IDN.toASCII(domain, IDN.ALLOW_UNASSIGNED);
+                // Конвертуємо в Punycode (ASCII-імена лишаються як є)
+                String idnDomain = DomainNameTable.toAscii(domain);
                 if (idnDomain.length() > 255) {
                     logger.warn("Skipping domain after IDN conversion due to length: {}", idnDomain);
                     continue;
                 }
 
                 // Перевіряємо валідність IDN-домену
-                if (domainValidator.isValid(idnDomain)) {
+                if (table.isValid(idnDomain)) {
                     String tld = extractTld(idnDomain);
                     if (tld == null) {
                         logger.warn("Invalid TLD (null) for domain: {}", idnDomain);
                         continue;
                     }
-                    // Перевіряємо TLD через кеш
-                    Boolean isValidTld = TLD_CACHE.computeIfAbsent(tld, k -> domainValidator.isValidTld(k));
+                    // Перевіряємо TLD за таблицею
+                    boolean isValidTld = table.isValidTld(tld);
                     if (!isValidTld) {
                         logger.warn("Invalid TLD '{}' for domain: {}", tld, idnDomain);
                         continue;
@@ -148,20 +143,20 @@ public class DomainValidatorUtil {
                 }
 
                 // Обробка гомогліфів для нелатинських символів
-                boolean hasNonLatin = domain.chars().anyMatch(c -> c > 127);
+                boolean hasNonLatin = !DomainNameTable.isAscii(domain);
                 if (hasNonLatin) {
                     String latinized = SKELETON_CACHE.computeIfAbsent(domain, spoofChecker::getSkeleton);
-                    String latinizedIdn = IDN.toASCII(latinized, IDN.ALLOW_UNASSIGNED).toLowerCase();
+                    String latinizedIdn = DomainNameTable.toAscii(latinized).toLowerCase();
                     if (latinizedIdn.length() > 255) {
                         logger.warn("Skipping latinized domain due to length: {}", latinizedIdn);
-                    } else if (domainValidator.isValid(latinizedIdn) && !latinizedIdn.equals(idnDomain)) {
+                    } else if (table.isValid(latinizedIdn) && !latinizedIdn.equals(idnDomain)) {
                         String latinizedTld = extractTld(latinizedIdn);
                         if (latinizedTld == null) {
                             logger.warn("Invalid TLD (null) for latinized domain: {}", latinizedIdn);
                             continue;
                         }
-                        // Перевіряємо TLD через кеш для латинізованого домену
-                        Boolean isValidLatinizedTld = TLD_CACHE.computeIfAbsent(latinizedTld, k -> domainValidator.isValidTld(k));
+                        // Перевіряємо TLD за таблицею для латинізованого домену
+                        boolean isValidLatinizedTld = table.isValidTld(latinizedTld);
                         if (!isValidLatinizedTld) {
                             logger.warn("Invalid TLD '{}' for latinized domain: {}", latinizedTld, latinizedIdn);
                             continue;
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Метадані завантаженого документа, що зберігаються поруч із ним у файлі
+ * «&lt;ім'я&gt;.meta»: ETag, Last-Modified, розмір і SHA-256 вмісту. За ними
+ * формується умовний запит (If-None-Match / If-Modified-Since) і визначається,
+ * чи змінився документ.
+ *
+ * @author olden
+ */
+public class DownloadMetadata {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadMetadata.class);
+    private static final String SUFFIX = ".meta";
+
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long size = -1;
+    private String sha256;
+
+    /**
+     * Повертає шлях до файлу метаданих для документа.
+     *
+     * @param document шлях до документа
+     * @return шлях до файлу метаданих
+     */
+    public static Path sidecarOf(Path document) {
+        return document.resolveSibling(document.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Завантажує метадані документа. Якщо файлу метаданих немає або його не
+     * вдалося прочитати, повертає порожні метадані.
+     *
+     * @param document шлях до документа
+     * @return метадані документа
+     */
+    public static DownloadMetadata load(Path document) {
+        DownloadMetadata m = new DownloadMetadata();
+        Path sidecar = sidecarOf(document);
+        if (!Files.isReadable(sidecar)) {
+            return m;
+        }
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(sidecar)) {
+            p.load(in);
+        } catch (IOException e) {
+            logger.warn("Failed to read metadata {}: {}", sidecar, e.getMessage());
+            return m;
+        }
+        m.url = p.getProperty("url");
+        m.etag = p.getProperty("etag");
+        m.lastModified = p.getProperty("last_modified");
+        m.sha256 = p.getProperty("sha256");
+        try {
+            m.size = Long.parseLong(p.getProperty("size", "-1").trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid size in metadata {}, ignoring", sidecar);
+        }
+        return m;
+    }
+
+    /**
+     * Атомарно записує метадані поруч із документом.
+     *
+     * @param document шлях до документа
+     * @throws IOException у разі помилок запису
+     */
+    public void store(Path document) throws IOException {
+        Properties p = new Properties();
+        setIfPresent(p, "url", url);
+        setIfPresent(p, "etag", etag);
+        setIfPresent(p, "last_modified", lastModified);
+        setIfPresent(p, "sha256", sha256);
+        p.setProperty("size", String.valueOf(size));
+        Path sidecar = sidecarOf(document);
+        Path tempPath = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            p.store(out, "Download metadata for " + document.getFileName());
+        }
+        StreamingDownload.moveAtomically(tempPath, sidecar);
+    }
+
+    private static void setIfPresent(Properties p, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            p.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Чи можна довіряти метаданим для документа: документ існує, його розмір
+     * збігається із записаним і відомий хеш вмісту.
+     *
+     * @param document шлях до документа
+     * @return true, якщо метадані відповідають документу
+     */
+    public boolean matches(Path document) {
+        try {
+            return sha256 != null && Files.exists(document) && Files.size(document) == size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public DownloadMetadata setUrl(String url) {
+        this.url = url;
+        return this;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public DownloadMetadata setEtag(String etag) {
+        this.etag = etag;
+        return this;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public DownloadMetadata setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+        return this;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public DownloadMetadata setSize(long size) {
+        this.size = size;
+        return this;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public DownloadMetadata setSha256(String sha256) {
+        this.sha256 = sha256;
+        return this;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Планувальник завантажень вкладень: виконує до fetch_concurrency завдань
+ * паралельно у віртуальних потоках, а темп запитів до кожного хоста задає
+ * спільний {@link HostRateLimiter}. Повтори завдань підпорядковуються спільній
+ * {@link RetryPolicy}.
+ *
+ * @author olden
+ */
+public class FetchScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchScheduler.class);
+
+    private final int concurrency;
+    private final HostRateLimiter rateLimiter;
+    private final RetryPolicy retryPolicy;
+    private final ExecutorService executor;
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public FetchScheduler(Properties p) {
+        this(p, new RetryPolicy(p));
+    }
+
+    /**
+     * Конструктор класа зі спільною на весь запуск політикою повторів.
+     *
+     * @param p - об'єкт властивостей
+     * @param policy - політика повторів
+     */
+    public FetchScheduler(Properties p, RetryPolicy policy) {
+        this.retryPolicy = policy;
+        this.concurrency = getConcurrency(p);
+        this.rateLimiter = new HostRateLimiter(p);
+        this.executor = Executors.newFixedThreadPool(this.concurrency,
+                Thread.ofVirtual().name("fetch-", 1).factory());
+        logger.debug("Fetch scheduler concurrency set to {}", this.concurrency);
+    }
+
+    /**
+     * Повертає кількість паралельних завантажень із властивості
+     * fetch_concurrency (за замовчуванням 2).
+     *
+     * @param p - об'єкт властивостей
+     * @return кількість паралельних завантажень, не менше 1
+     */
+    public static int getConcurrency(Properties p) {
+        try {
+            return Math.max(1, Integer.parseInt(p.getProperty("fetch_concurrency", "2").trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid fetch_concurrency value, using default: 2");
+            return 2;
+        }
+    }
+
+    /**
+     * Ставить завдання в чергу на виконання.
+     *
+     * @param task завдання
+     * @return Future для очікування завершення
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public HostRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Чекає завершення поставлених завдань і виводить статистику обмежувача.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Fetch tasks did not finish in time, cancelling");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        rateLimiter.logStats();
+    }
+}
@@ -16,28 +16,28 @@
 package net.ukrcom.cip_gov_ua_getter;
 
 import com.ibm.icu.text.SpoofChecker;
-import com.microsoft.playwright.*;
-import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.APIResponse;
 import org.apache.commons.validator.routines.DomainValidator;
 import org.apache.commons.validator.routines.InetAddressValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Клас зчитує перелік доменів з відповідних text/plain файлів у розпорядженнях.
@@ -48,40 +48,35 @@ public class GetPrescript {
     
     private static final Logger logger = LoggerFactory.getLogger(GetPrescript.class);
     private static final long MAX_FILE_SIZE_BYTES_DEFAULT = 15_728_640; // 15 МБ
+    private static final int VALIDATE_PARALLEL_THRESHOLD_DEFAULT = 262_144;
+    private static final int VALIDATE_CHUNK_SIZE_DEFAULT = 65_536;
 
     protected final String urlPrescript;
     protected String bodyPrescript;
     protected String id;
     protected final Path storePrescriptTo;
     protected String origFileName;
-    private final String userAgent;
-    private final String secChUa;
     private final Properties prop;
     private final String mimeType;
     private final boolean debug;
     private final String[] serviceSubdomains;
     private final long maxFileSizeBytes;
-
-    // Спільний JavaScript-код для AJAX-запиту
-    private static final String FETCH_SCRIPT_TEMPLATE = """
-            const response = await fetch('%s', {
-                method: 'GET',
-                headers: {
-                    'Accept': 'text/plain, */*',
-                    'Sec-Ch-Ua': '%s',
-                    'Sec-Fetch-Dest': 'empty',
-                    'Sec-Fetch-Mode': 'cors',
-                    'Sec-Fetch-Site': 'same-origin'
-                }
-            });
-            if (!response.ok) {
-                throw new Error(`HTTP ${response.status}`);
-            }
-            """;
+    private final int validateParallelThreshold;
+    private final int validateChunkSize;
+    private BrowserPool browserPool;
+    private HostRateLimiter rateLimiter;
+    private RetryPolicy retryPolicy;
+    private final NetworkArchive archive;
+    private SessionHttpClient httpClient;
+    private ValidationCache validationCache;
+    private String contentSha256;
+    private String[] cachedDomains;
 
     // SpoofChecker для обробки гомогліфів
     private static final SpoofChecker SPOOF_CHECKER;
     private boolean localRead;
+    private boolean fetchedContent;
+    private boolean fetchFailed;
     
     static {
         SpoofChecker.Builder builder = new SpoofChecker.Builder();
@@ -93,6 +88,7 @@ public class GetPrescript {
     public GetPrescript(Properties p, String i, String mt) throws IOException {
         this.localRead = true;
         this.prop = p;
+        this.archive = new NetworkArchive(p);
         this.debug = this.prop.getProperty("debug", "false").equalsIgnoreCase("true");
         this.id = i;
         this.mimeType = mt;
@@ -109,14 +105,6 @@ public class GetPrescript {
             logger.error("Failed to create directory {}: {}", this.storePrescriptTo, e.getMessage(), e);
             throw new RuntimeException("Cannot create directory: " + this.storePrescriptTo, e);
         }
-        this.userAgent = this.prop.getProperty(
-                "userAgent",
-                "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/129.0.0.0 Safari/537.36"
-        ).trim();
-        this.secChUa = this.prop.getProperty(
-                "secChUa",
-                "\"Chromium\";v=\"129\", \"Not:A-Brand\";v=\"24\", \"Google Chrome\";v=\"129\""
-        ).trim();
         String subdomains = p.getProperty("SERVICE_SUBDOMAINS",
                 "www,ftp,mail,api,blog,shop,login,admin,web,secure,m,mobile,app,dev,test,m");
         this.serviceSubdomains = Arrays.stream(subdomains.split(","))
@@ -143,6 +131,17 @@ public class GetPrescript {
         }
         this.maxFileSizeBytes = parsedMax;
         logger.debug("Max file size set to {} bytes", this.maxFileSizeBytes);
+        this.validateParallelThreshold = parsePositiveInt("validate_parallel_threshold", VALIDATE_PARALLEL_THRESHOLD_DEFAULT);
+        this.validateChunkSize = parsePositiveInt("validate_chunk_size", VALIDATE_CHUNK_SIZE_DEFAULT);
+    }
+
+    private int parsePositiveInt(String key, int def) {
+        try {
+            return Math.max(1, Integer.parseInt(this.prop.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
     }
     
     public GetPrescript getPrescriptFrom() {
@@ -152,213 +151,346 @@ public class GetPrescript {
                     logger.debug("Skipping read for non-text/plain file ID {}: {}", id, getFileName());
                     return this;
                 }
+                if (lookupValidated(Paths.get(getFileName()))) {
+                    logger.info("Using cached validation result for ID {}: {}", id, getFileName());
+                    return this;
+                }
                 logger.info("Reading existing prescript file for ID {}: {}", id, getFileName());
                 this.bodyPrescript = readLocalPrescript();
             } else if (mimeType.equalsIgnoreCase("text/plain")) {
                 logger.info("Fetching prescript for ID {} from server", id);
-                this.bodyPrescript = fetchPrescriptWithRetry(this.prop, 5);
                 this.localRead = false;
+                // Одне завантаження: файл пишеться потоково, тіло читається з нього ж
+                boolean keep = canStore();
+                Path target = keep ? Paths.get(getFileName()) : Files.createTempFile("prescript-" + id, ".tmp");
+                try {
+                    fetchPrescript(target);
+                    this.fetchedContent = true;
+                    if (!lookupValidated(target)) {
+                        this.bodyPrescript = new String(Files.readAllBytes(target), StandardCharsets.UTF_8);
+                    }
+                } finally {
+                    if (!keep) {
+                        Files.deleteIfExists(target);
+                    }
+                }
             } else {
                 logger.debug("Skipping fetch for non-text/plain file ID {}: no local file", id);
             }
         } catch (IOException ex) {
             logger.warn("Failed getPrescriptFrom for ID {}: {}", id, ex.getMessage());
             this.localRead = false;
+            this.fetchFailed = true;
         }
         return this;
     }
     
-    private String executeAjaxRequest(boolean returnAsDataUrl) throws
-            IOException {
-        try (Playwright playwright = Playwright.create();
-             Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
-                     .setArgs(Arrays.asList("--no-sandbox", "--disable-setuid-sandbox"))
-                     .setHeadless(true)
-                     .setChannel("chrome"));
-             BrowserContext context = browser.newContext(new Browser.NewContextOptions()
-                     .setUserAgent(this.userAgent)
-                     .setLocale("uk-UA")
-                     .setExtraHTTPHeaders(Map.of(
-                             "Accept", "text/plain, */*",
-                             "Accept-Language", "uk,en-US;q=0.9,en;q=0.8,ru;q=0.7",
-                             "Sec-Ch-Ua", this.secChUa,
-                             "Sec-Fetch-Dest", "empty",
-                             "Sec-Fetch-Mode", "cors",
-                             "Sec-Fetch-Site", "same-origin"
-                     ))); Page page = context.newPage()) {
-
-            // Блокуємо запити до Google Analytics і Google Tag Manager
-            page.route("**/*google-analytics.com/**", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked Google Analytics request: {}", url);
-                route.abort();
-            });
-            page.route("**/*googletagmanager.com/**", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked Google Tag Manager request: {}", url);
-                route.abort();
-            });
-
-            // Блокуємо статичні ресурси (зображення, шрифти, стилі)
-            page.route("**/*.{jpg,jpeg,png,svg,woff,woff2,ttf,css,gif,ico}", route -> {
-                String url = route.request().url();
-                logger.debug("Blocked static resource: {}", url);
-                route.abort();
-            });
-
-            // Логування запитів і відповідей у дебаг-режимі
-            if (this.debug) {
-                page.onRequest(request -> logger.debug("Playwright request: {} {}", request.method(), request.url()));
-                page.onResponse(response -> logger.debug("Playwright response: {} {} {}",
-                        response.status(), response.request().method(), response.url()));
+    private long downloadTo(Path dest) throws IOException {
+        if (this.archive.isReplay()) {
+            return this.archive.replayTo(this.archive.lookup(urlPrescript), dest, maxFileSizeBytes);
+        }
+        String host = HostRateLimiter.hostOf(urlPrescript);
+        if (this.rateLimiter != null) {
+            this.rateLimiter.acquire(host);
+        }
+        try {
+            long size = fetchContent(dest);
+            if (this.rateLimiter != null) {
+                this.rateLimiter.onSuccess(host);
+            }
+            this.archive.recordFile(urlPrescript, Map.of("content-type", mimeType), dest);
+            return size;
+        } catch (HttpStatusException e) {
+            if (this.rateLimiter != null && e.isThrottling()) {
+                this.rateLimiter.onBackoff(host);
             }
+            throw e;
+        } catch (StreamingDownload.SizeLimitExceededException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (this.rateLimiter != null) {
+                this.rateLimiter.onBackoff(host);
+            }
+            throw e;
+        }
+    }
 
-            // Витягуємо базовий URL із urlPrescript
-            String baseUrl;
+    private long fetchContent(Path dest) throws IOException {
+        if (this.httpClient != null && this.httpClient.isActive()) {
             try {
-                URI uri = new URI(urlPrescript);
-                String scheme = uri.getScheme();
-                String host = uri.getHost();
-                if (scheme == null || host == null) {
-                    throw new URISyntaxException(urlPrescript, "Missing scheme or host");
-                }
-                int port = uri.getPort();
-                baseUrl = scheme + "://" + host + (port != -1 ? ":" + port : "") + "/";
-            } catch (URISyntaxException e) {
-                logger.warn("Failed to parse base URL from {}, falling back to default: {}", urlPrescript, e.getMessage());
-                baseUrl = "https://cip.gov.ua/";
+                return this.httpClient.download(urlPrescript, dest, maxFileSizeBytes);
+            } catch (SessionHttpClient.ChallengeException e) {
+                logger.warn("Falling back to browser for ID {}: {}", id, e.getMessage());
             }
+        }
+        return downloadViaBrowser(dest);
+    }
 
-            // Ініціалізація сесії
-            logger.debug("Navigating to base URL: {}", baseUrl);
-            //page.navigate(baseUrl);
-            //page.waitForLoadState();
-            page.navigate(baseUrl, new Page.NavigateOptions().setTimeout(30000));  // 30с тайм-аут
-            page.waitForLoadState(LoadState.LOAD, new Page.WaitForLoadStateOptions().setTimeout(30000));  // Тайм-аут для wait
-
-            /*
-            // Формуємо JavaScript-скрипт
-            String script = returnAsDataUrl
-                    ? """
-                    async () => {
-                        %s
-                        const blob = await response.blob();
-                        return new Promise(resolve => {
-                            const reader = new FileReader();
-                            reader.onload = () => resolve(reader.result);
-                            reader.readAsDataURL(blob);
-                        });
-                    }
-                    """.formatted(FETCH_SCRIPT_TEMPLATE.formatted(this.urlPrescript, this.secChUa))
-                    : """
-                    async () => {
-                        %s
-                        return await response.text();
-                    }
-                    """.formatted(FETCH_SCRIPT_TEMPLATE.formatted(this.urlPrescript, this.secChUa));
-
-            return (String) page.evaluate(script);
-             */
-            if (returnAsDataUrl) {
-                logger.debug("executeAjaxRequest: {} is binary: {}", urlPrescript, returnAsDataUrl);
-                // Для бінарних файлів (PDF) використовуємо прямий запит
-                APIResponse response = page.request().get(urlPrescript);
+    /**
+     * Завантажує файл через браузерний контекст. Playwright не віддає тіло
+     * відповіді потоком, тож на цьому шляху ліміт max_file_size_bytes
+     * перевіряється за Content-Length ще до передачі тіла в JVM, а якщо
+     * заголовка немає — вже після того, як браузер отримав тіло повністю.
+     * Потокове завантаження з перевіркою ліміту під час надходження даних
+     * виконує швидкий HTTP-шлях ({@link SessionHttpClient#download}).
+     */
+    private long downloadViaBrowser(Path dest) throws IOException {
+        return withPage(page -> {
+            logger.debug("downloadTo: {} as {} ⮕ {}", urlPrescript, mimeType, dest);
+            APIResponse response = page.request().get(urlPrescript);
+            try {
                 if (!response.ok()) {
                     logger.warn("HTTP  {}: {}", response.status(), response.statusText());
-                    throw new IOException("HTTP " + response.status() + ": " + response.statusText());
+                    throw new HttpStatusException(response.status(), response.statusText());
+                }
+                // Відкидаємо завеликі файли ще до передачі тіла з браузера в JVM
+                long declared = declaredLength(response);
+                if (declared > maxFileSizeBytes) {
+                    throw new StreamingDownload.SizeLimitExceededException(declared, maxFileSizeBytes);
                 }
                 byte[] content = response.body();
                 if (content == null) {
                     throw new IOException("Empty response body for URL: " + urlPrescript);
                 }
-                if (content.length > maxFileSizeBytes) {
-                    logger.warn("File too large: {}  bytes, max allowed: {}", content.length, maxFileSizeBytes);
-                    throw new IOException("File too large: " + content.length + " bytes, max allowed: " + maxFileSizeBytes);
-                } else {
-                    logger.debug("File size: {}  bytes", content.length);
-                }
-                return "data:application/octet-stream;base64," + java.util.Base64.getEncoder().encodeToString(content);
-            } else {
-                logger.debug("executeAjaxRequest: {} is text: {}", urlPrescript, returnAsDataUrl);
-                // Для текстових файлів використовуємо JavaScript
-                String script = """
-                    async () => {
-                        const response = await fetch('%s', {
-                            method: 'GET',
-                            headers: {
-                                'Accept': 'text/plain, */*',
-                                'Sec-Ch-Ua': '%s',
-                                'Sec-Fetch-Dest': 'empty',
-                                'Sec-Fetch-Mode': 'cors',
-                                'Sec-Fetch-Site': 'same-origin'
-                            }
-                        });
-                        if (!response.ok) {
-                            throw new Error(`HTTP ${response.status}`);
-                        }
-                        return await response.text();
-                    }
-                    """.formatted(urlPrescript, secChUa);
-                return (String) page.evaluate(script);
+                long size = StreamingDownload.toFile(
+                        Channels.newChannel(new ByteArrayInputStream(content)), dest, maxFileSizeBytes);
+                logger.debug("File size: {}  bytes", size);
+                return size;
+            } finally {
+                response.dispose();
             }
-            
+        });
+    }
+
+    /**
+     * Розмір тіла з заголовка Content-Length.
+     *
+     * @return розмір у байтах або -1, якщо заголовка немає чи він некоректний
+     */
+    private long declaredLength(APIResponse response) {
+        String contentLength = response.headers().get("content-length");
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            logger.debug("Invalid Content-Length '{}' for URL: {}", contentLength, urlPrescript);
+            return -1;
+        }
+    }
+
+    private <T> T withPage(BrowserPool.PageTask<T> task) throws IOException {
+        String baseUrl = BrowserPool.baseUrlOf(urlPrescript);
+        if (this.browserPool != null) {
+            return this.browserPool.withPage(baseUrl, task);
+        }
+        try (BrowserPool ownPool = new BrowserPool(this.prop)) {
+            return ownPool.withPage(baseUrl, task);
         }
     }
     
+    /**
+     * Шукає в кеші валідації результат для вмісту файлу.
+     *
+     * @return true, якщо результат знайдено і файл можна не читати
+     */
+    private boolean lookupValidated(Path file) throws IOException {
+        if (this.validationCache == null || !this.validationCache.isEnabled()) {
+            return false;
+        }
+        this.contentSha256 = ResumableDownload.sha256Of(file);
+        this.cachedDomains = this.validationCache.load(this.contentSha256);
+        return this.cachedDomains != null;
+    }
+
     private String readLocalPrescript() throws IOException {
         File file = new File(getFileName());
         return Files.readString(file.toPath(), StandardCharsets.UTF_8);
     }
     
-    private String fetchPrescriptWithRetry(Properties p, int maxRetries) throws
-            IOException {
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                String result = executeAjaxRequest(false);
-                logger.info("Successfully fetched prescript ID {} on attempt {}", this.id, attempt);
-                return result;
-            } catch (IOException | RuntimeException e) {
-                logger.warn("Attempt {} failed for ID {}: {}", attempt, this.id, e.getMessage());
-                if (attempt == maxRetries) {
-                    logger.error("Failed to fetch prescript ID {} after {} attempts: {}", this.id, maxRetries, e.getMessage());
-                    try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
-                        fw.write("ID: " + this.id + ", Error: " + e.getMessage() + "\n");
-                    }
-                    throw new IOException("Failed to fetch prescript after " + maxRetries + " attempts: " + e.getMessage(), e);
-                }
-                try {
-                    Thread.sleep(1000 + (long) (Math.random() * 5000));
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
+    private long fetchPrescript(Path dest) throws IOException {
+        try {
+            long size = retryPolicy().execute("Fetching prescript " + this.id, urlPrescript, () -> downloadTo(dest));
+            logger.info("Successfully fetched prescript ID {}", this.id);
+            return size;
+        } catch (StreamingDownload.SizeLimitExceededException e) {
+            logger.warn("File ID {} is too large: {}", this.id, e.getMessage());
+            try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
+                fw.write("ID: " + this.id + ", Error: " + e.getMessage() + "\n");
+            }
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to fetch prescript ID {}: {}", this.id, e.getMessage());
+            try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
+                fw.write("ID: " + this.id + ", Error: " + e.getMessage() + "\n");
             }
+            throw new IOException("Failed to fetch prescript: " + e.getMessage(), e);
         }
-        throw new IOException("Failed to fetch prescript: no attempts succeeded");
+    }
+
+    private RetryPolicy retryPolicy() {
+        if (this.retryPolicy == null) {
+            this.retryPolicy = new RetryPolicy(this.prop);
+        }
+        return this.retryPolicy;
     }
     
     public String[] getBodyPrescript() {
+        if (cachedDomains != null) {
+            return cachedDomains.clone();
+        }
         if (bodyPrescript == null || bodyPrescript.length() > 10_000_000) {
             logger.warn("Prescript ID {} is too large ({} bytes) or null, skipping", id, bodyPrescript != null ? bodyPrescript.length() : 0);
             return new String[0];
         }
-        DomainValidator domainValidator = DomainValidator.getInstance(true);
-        InetAddressValidator ipValidator = InetAddressValidator.getInstance();
-        Set<String> validDomains = new HashSet<>();
-        
-        for (String s : this.bodyPrescript.split("\\R")) {
-            validDomains.addAll(DomainValidatorUtil.validateDomain(
-                    s, serviceSubdomains, null, domainValidator, ipValidator, SPOOF_CHECKER, logger,
-                    false, null, null));
+        // Рядки ділимо так само, як split("\\R"): кінцеві порожні рядки відкидаються
+        int end = this.bodyPrescript.length();
+        while (end > 0 && isLineBreak(this.bodyPrescript.charAt(end - 1))) {
+            end--;
+        }
+        ValidateRange task = new ValidateRange(this.bodyPrescript, 0, end, serviceSubdomains, validateChunkSize);
+        // Невеликі файли валідуються в поточному потоці, великі — частинами паралельно
+        Set<String> validDomains = end < validateParallelThreshold
+                ? task.compute()
+                : ForkJoinPool.commonPool().invoke(task);
+
+        String[] result = validDomains.toArray(String[]::new);
+        if (this.validationCache != null && this.contentSha256 != null) {
+            this.validationCache.store(this.contentSha256, result);
+        }
+        return result;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u000B' || c == '\f'
+                || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Валідація діапазону тексту, вирівняного по межах рядків. Діапазон,
+     * більший за chunkSize, ділиться навпіл по найближчому переносу рядка.
+     * Результати частин зливаються в порядку частин, тож домени йдуть у
+     * порядку першої появи у файлі незалежно від кількості потоків.
+     */
+    private static final class ValidateRange extends RecursiveTask<Set<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String body;
+        private final int from;
+        private final int to;
+        private final String[] serviceSubdomains;
+        private final int chunkSize;
+
+        ValidateRange(String body, int from, int to, String[] serviceSubdomains, int chunkSize) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.serviceSubdomains = serviceSubdomains;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Set<String> compute() {
+            if (to - from > chunkSize) {
+                int split = lineStartAfter(from + (to - from) / 2);
+                if (split > from && split < to) {
+                    ValidateRange left = new ValidateRange(body, from, split, serviceSubdomains, chunkSize);
+                    ValidateRange right = new ValidateRange(body, split, to, serviceSubdomains, chunkSize);
+                    right.fork();
+                    Set<String> result = left.compute();
+                    result.addAll(right.join());
+                    return result;
+                }
+            }
+            return validateLines();
+        }
+
+        /**
+         * Початок рядка, що йде за переносом на позиції i або після неї.
+         */
+        private int lineStartAfter(int i) {
+            while (i < to && !isLineBreak(body.charAt(i))) {
+                i++;
+            }
+            if (i >= to) {
+                return to;
+            }
+            // \r\n — один перенос
+            return body.charAt(i) == '\r' && i + 1 < to && body.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+        }
+
+        private Set<String> validateLines() {
+            DomainValidator domainValidator = DomainValidator.getInstance(true);
+            InetAddressValidator ipValidator = InetAddressValidator.getInstance();
+            Set<String> validDomains = new LinkedHashSet<>();
+            int lineStart = from;
+            while (true) {
+                int lineEnd = lineStart;
+                while (lineEnd < to && !isLineBreak(body.charAt(lineEnd))) {
+                    lineEnd++;
+                }
+                validDomains.addAll(DomainValidatorUtil.validateDomain(
+                        body.substring(lineStart, lineEnd), serviceSubdomains, null, domainValidator, ipValidator,
+                        SPOOF_CHECKER, logger, false, null, null));
+                if (lineEnd >= to) {
+                    return validDomains;
+                }
+                lineStart = body.charAt(lineEnd) == '\r' && lineEnd + 1 < to && body.charAt(lineEnd + 1) == '\n'
+                        ? lineEnd + 2 : lineEnd + 1;
+                if (lineStart >= to) {
+                    // Діапазон закінчується переносом, за яким іде наступна частина
+                    return validDomains;
+                }
+            }
         }
-        
-        return validDomains.toArray(String[]::new);
     }
     
     public GetPrescript storePrescriptTo() {
-        if (isExists(getFileName())) {
-            logger.debug("Skipping store for ID {}: file already exists or origFileName not set", id);
+        if (isExists(getFileName()) || this.fetchedContent) {
+            logger.debug("Skipping store for ID {}: file already exists or was stored on fetch", id);
             return this;
         }
+        if (!canStore()) {
+            return this;
+        }
+        
+        try {
+            long size = retryPolicy().execute("Storing prescript " + this.id, urlPrescript,
+                    () -> downloadTo(Paths.get(getFileName())));
+            logger.debug("fileContent length: {}", size);
+            logger.info("Stored prescript {}", this.id);
+        } catch (StreamingDownload.SizeLimitExceededException e) {
+            logger.debug("File ID {} is too large: {}", id, e.getMessage());
+            try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
+                fw.write("ID: " + id + ", Error: " + e.getMessage() + "\n");
+            } catch (IOException ex) {
+                logger.warn("Failed to write to failed_ids.txt for ID {}: {}", this.id, ex.getMessage());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to store prescript {}: {}", this.id, e.getMessage());
+            try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
+                fw.write("ID: " + this.id + ", Error: Failed to store: " + e.getMessage() + "\n");
+            } catch (IOException ex) {
+                logger.warn("Failed to write to failed_ids.txt for ID {}: {}", this.id, ex.getMessage());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Перевіряє, чи можна зберегти вкладення: каталог існує, доступний для
+     * запису і на диску достатньо місця. Причину відмови записує до
+     * failed_ids.txt.
+     *
+     * @return true, якщо зберігати можна
+     */
+    private boolean canStore() {
+        if (!this.mkDir()) {
+            logger.error("Failed to create directory for ID {}: {}", id, storePrescriptTo);
+            return false;
+        }
 
         // Перевірка прав доступу
         File storeDir = storePrescriptTo.toFile();
@@ -369,7 +501,7 @@ public class GetPrescript {
             } catch (IOException ex) {
                 logger.error("Can't write failed_ids.txt: {}", ex.toString());
             }
-            return this;
+            return false;
         }
 
         // Перевірка вільного місця
@@ -384,57 +516,11 @@ public class GetPrescript {
             } catch (IOException ex) {
                 logger.error("Can't write failed_ids.txt: {}", ex.toString());
             }
-            return this;
-        }
-        
-        if (this.mkDir()) {
-            for (int attempt = 1; attempt <= 3; attempt++) {
-                try {
-                    String dataUrl = executeAjaxRequest(true);
-                    logger.debug("dataUrl length: {}", dataUrl.length());
-                    String[] dataParts = dataUrl.split(",", 2);
-                    if (dataParts.length < 2 || dataParts[1].isEmpty()) {
-                        throw new IOException("Unexpected dataUrl format for ID " + id
-                                + ": missing base64 payload (dataUrl length=" + dataUrl.length() + ")");
-                    }
-                    byte[] fileContent = java.util.Base64.getDecoder().decode(dataParts[1]);
-                    logger.debug("fileContent length: {}", fileContent.length);
-                    if (fileContent.length > maxFileSizeBytes) {
-                        logger.debug("File ID {} is too large: {} bytes, max allowed: {} bytes",
-                                id, fileContent.length, maxFileSizeBytes);
-                        try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
-                            fw.write("ID: " + id + ", Error: File too large (" + fileContent.length + " bytes, max " + maxFileSizeBytes + " bytes)\n");
-                        }
-                        return this;
-                    }
-                    try (FileOutputStream fos = new FileOutputStream(getFileName())) {
-                        fos.write(fileContent);
-                    }
-                    logger.info("Stored prescript {} on attempt {}", this.id, attempt);
-                    return this;
-                } catch (IOException | IllegalArgumentException e) {
-                    logger.warn("Store attempt {} failed for ID {}: {}", attempt, this.id, e.getMessage());
-                    if (attempt == 3) {
-                        logger.error("Failed to store prescript {} after 3 attempts", this.id);
-                        try (FileWriter fw = new FileWriter("failed_ids.txt", true)) {
-                            fw.write("ID: " + this.id + ", Error: Failed to store after 3 attempts\n");
-                        } catch (IOException ex) {
-                            logger.warn("Failed to write to failed_ids.txt for ID {}: {}", this.id, ex.getMessage());
-                        }
-                    }
-                    try {
-                        Thread.sleep(1000 + (long) (Math.random() * 1000));
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }
-        } else {
-            logger.error("Failed to create directory for ID {}: {}", id, storePrescriptTo);
+            return false;
         }
-        return this;
+        return true;
     }
-    
+
     protected boolean mkDir() {
         try {
             Files.createDirectories(storePrescriptTo);
@@ -451,6 +537,65 @@ public class GetPrescript {
         return f.exists() && f.canRead();
     }
     
+    /**
+     * Встановлює спільний пул браузерів. Без пулу браузер запускається окремо
+     * для кожного запиту.
+     *
+     * @param pool пул браузерів
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public GetPrescript setBrowserPool(BrowserPool pool) {
+        this.browserPool = pool;
+        return this;
+    }
+    
+    /**
+     * Встановлює спільний обмежувач частоти запитів до сервера.
+     *
+     * @param limiter обмежувач частоти
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public GetPrescript setRateLimiter(HostRateLimiter limiter) {
+        this.rateLimiter = limiter;
+        return this;
+    }
+    
+    /**
+     * Встановлює спільну політику повторів. Без неї використовується власна
+     * політика з тими самими налаштуваннями.
+     *
+     * @param policy політика повторів
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public GetPrescript setRetryPolicy(RetryPolicy policy) {
+        this.retryPolicy = policy;
+        return this;
+    }
+    
+    /**
+     * Встановлює постійний кеш результатів валідації. Незмінені вкладення
+     * тоді не перечитуються й не валідуються повторно.
+     *
+     * @param cache кеш валідації
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public GetPrescript setValidationCache(ValidationCache cache) {
+        this.validationCache = cache;
+        return this;
+    }
+    
+    /**
+     * Встановлює HTTP-клієнт швидкого шляху. Браузер тоді використовується лише
+     * як запасний варіант.
+     *
+     * @param client HTTP-клієнт швидкого шляху
+     * @return цей об'єкт для ланцюгових викликів
+     */
+    public GetPrescript setHttpClient(SessionHttpClient client) {
+        this.httpClient = client;
+        return this;
+    }
+    
     public GetPrescript setOrigFileName(String fileName) {
         if (fileName == null) {
             this.origFileName = null;
@@ -544,4 +689,13 @@ public class GetPrescript {
     public boolean isLocalRead() {
         return this.localRead;
     }
+    
+    /**
+     * Чи завершилося отримання розпорядження помилкою (вміст недоступний).
+     *
+     * @return
+     */
+    public boolean isFetchFailed() {
+        return this.fetchFailed;
+    }
 }
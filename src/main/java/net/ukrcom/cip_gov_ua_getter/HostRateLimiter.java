@@ -0,0 +1,188 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Адаптивний обмежувач частоти запитів: окремий token bucket для кожного
+ * хоста. Після успішних відповідей частота поступово зростає до максимуму, а
+ * після 429/5xx чи мережевих збоїв — удвічі зменшується (AIMD). Якщо
+ * fetch_rate_max_per_second не задано, максимум дорівнює стартовій частоті,
+ * тож без явного налаштування сервер не отримує більше запитів, ніж раніше.
+ *
+ * @author olden
+ */
+public class HostRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HostRateLimiter.class);
+
+    private final double initialRate;
+    private final double minRate;
+    private final double maxRate;
+    private final double rateStep;
+    private final double burst;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Token bucket одного хоста. Токени можуть іти в мінус: так запит
+     * «бронює» свій слот і чекає на нього поза блокуванням.
+     */
+    private final class Bucket {
+
+        double rate;
+        double tokens;
+        long lastRefillNanos;
+        long acquired;
+        long waitedNanos;
+        long backoffs;
+
+        Bucket() {
+            this.rate = initialRate;
+            this.tokens = burst;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * rate);
+            lastRefillNanos = now;
+            tokens -= 1;
+            acquired++;
+            long waitNanos = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            waitedNanos += waitNanos;
+            return waitNanos;
+        }
+
+        synchronized void success() {
+            rate = Math.min(maxRate, rate + rateStep);
+        }
+
+        synchronized double backoff() {
+            rate = Math.max(minRate, rate / 2);
+            backoffs++;
+            return rate;
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public HostRateLimiter(Properties p) {
+        this.initialRate = parsePositive(p, "fetch_rate_per_second", 0.67);
+        this.minRate = Math.min(this.initialRate, parsePositive(p, "fetch_rate_min_per_second", 0.1));
+        this.maxRate = Math.max(this.initialRate, parsePositive(p, "fetch_rate_max_per_second", this.initialRate));
+        this.rateStep = parsePositive(p, "fetch_rate_step", 0.05);
+        this.burst = Math.max(1, parsePositive(p, "fetch_burst", 1));
+        logger.debug("Rate limiter: initial {} req/s, min {}, max {}, step {}, burst {}",
+                initialRate, minRate, maxRate, rateStep, burst);
+    }
+
+    private static double parsePositive(Properties p, String key, double def) {
+        try {
+            double value = Double.parseDouble(p.getProperty(key, String.valueOf(def)).trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Використовуємо значення за замовчуванням
+        }
+        logger.warn("Invalid {} value, using default: {}", key, def);
+        return def;
+    }
+
+    /**
+     * Чекає на дозвіл виконати запит до хоста.
+     *
+     * @param host ім'я хоста
+     * @throws InterruptedIOException якщо очікування перервано
+     */
+    public void acquire(String host) throws InterruptedIOException {
+        long waitNanos = bucket(host).reserve();
+        if (waitNanos <= 0) {
+            return;
+        }
+        logger.debug("Rate limiter: waiting {} ms for {}", TimeUnit.NANOSECONDS.toMillis(waitNanos), host);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rate limiter: " + host);
+        }
+    }
+
+    /**
+     * Повідомляє про успішну відповідь хоста — частота трохи зростає.
+     *
+     * @param host ім'я хоста
+     */
+    public void onSuccess(String host) {
+        bucket(host).success();
+    }
+
+    /**
+     * Повідомляє про перевантаження або збій хоста — частота зменшується
+     * вдвічі.
+     *
+     * @param host ім'я хоста
+     */
+    public void onBackoff(String host) {
+        double rate = bucket(host).backoff();
+        logger.info("Rate limiter: backing off {} to {} req/s", host, String.format("%.2f", rate));
+    }
+
+    private Bucket bucket(String host) {
+        return buckets.computeIfAbsent(host, h -> new Bucket());
+    }
+
+    /**
+     * Витягує ім'я хоста з URL для групування запитів.
+     *
+     * @param url повний URL
+     * @return ім'я хоста або сам URL, якщо його не вдалося розібрати
+     */
+    public static String hostOf(String url) {
+        try {
+            String host = new URI(url).getHost();
+            return host != null ? host : url;
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Виводить статистику за хостами.
+     */
+    public void logStats() {
+        buckets.forEach((host, b) -> {
+            synchronized (b) {
+                logger.info("Rate limiter stats for {}: {} requests, {} ms waited, {} backoffs, final rate {} req/s",
+                        host, b.acquired, TimeUnit.NANOSECONDS.toMillis(b.waitedNanos), b.backoffs,
+                        String.format("%.2f", b.rate));
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.IOException;
+
+/**
+ * Виняток для відповіді сервера з неуспішним HTTP-статусом.
+ *
+ * @author olden
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public HttpStatusException(int status, String statusText) {
+        super("HTTP " + status + ": " + statusText);
+        this.status = status;
+    }
+
+    /**
+     * Повертає HTTP-статус відповіді.
+     *
+     * @return
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Чи свідчить статус про перевантаження сервера (429 або 5xx), після
+     * якого слід пригальмувати.
+     *
+     * @return
+     */
+    public boolean isThrottling() {
+        return this.status == 429 || this.status >= 500;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Архів мережевих відповідей для запису та відтворення. У режимі record
+ * кожна отримана відповідь (список статей, вкладення, PDF, сторінка з
+ * посиланням на PDF) зберігається в network_archive_dir: тіло — стиснутим
+ * файлом «&lt;sha256(url)&gt;.body.gz», URL і заголовки — у
+ * «&lt;sha256(url)&gt;.meta». У режимі replay ті самі запити обслуговуються з
+ * архіву без мережі, зі штучною затримкою network_replay_latency_ms, що дає
+ * повторювані заміри часу запуску на машині без доступу до джерел.
+ *
+ * Режим задає властивість network_mode: live (за замовчуванням), record або
+ * replay.
+ *
+ * @author olden
+ */
+public class NetworkArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkArchive.class);
+    private static final String HEADER_PREFIX = "header.";
+
+    /**
+     * Режим роботи архіву.
+     */
+    public enum Mode {
+        LIVE, RECORD, REPLAY
+    }
+
+    private final Mode mode;
+    private final Path dir;
+    private final long latencyMs;
+    private final long jitterMs;
+
+    /**
+     * Відповідь, збережена в архіві.
+     */
+    public static final class Entry {
+
+        private final String url;
+        private final Map<String, String> headers;
+        private final Path body;
+
+        private Entry(String url, Map<String, String> headers, Path body) {
+            this.url = url;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Повертає заголовок відповіді (ім'я без урахування регістру).
+         *
+         * @param name ім'я заголовка
+         * @return значення або null
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public NetworkArchive(Properties p) {
+        Mode parsedMode = Mode.LIVE;
+        String rawMode = p.getProperty("network_mode", "live").trim();
+        try {
+            parsedMode = Mode.valueOf(rawMode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid network_mode value '{}', using default: live", rawMode);
+        }
+        this.mode = parsedMode;
+        this.dir = Paths.get(p.getProperty("network_archive_dir", "./network-archive").trim());
+        this.latencyMs = parseNonNegative(p, "network_replay_latency_ms", 0);
+        this.jitterMs = parseNonNegative(p, "network_replay_jitter_ms", 0);
+    }
+
+    private static long parseNonNegative(Properties p, String key, long def) {
+        try {
+            return Math.max(0, Long.parseLong(p.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isReplay() {
+        return mode == Mode.REPLAY;
+    }
+
+    public boolean isRecording() {
+        return mode == Mode.RECORD;
+    }
+
+    /**
+     * Знаходить відповідь в архіві та імітує мережеву затримку.
+     *
+     * @param url адреса запиту
+     * @return збережена відповідь
+     * @throws IOException якщо відповіді немає в архіві
+     */
+    public Entry lookup(String url) throws IOException {
+        String key = keyOf(url);
+        Path metaPath = dir.resolve(key + ".meta");
+        Path bodyPath = dir.resolve(key + ".body.gz");
+        if (!Files.isReadable(metaPath) || !Files.isReadable(bodyPath)) {
+            throw new FileNotFoundException("Not in network archive: " + url);
+        }
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaPath)) {
+            meta.load(in);
+        }
+        Map<String, String> headers = new TreeMap<>();
+        for (String name : meta.stringPropertyNames()) {
+            if (name.startsWith(HEADER_PREFIX)) {
+                headers.put(name.substring(HEADER_PREFIX.length()), meta.getProperty(name));
+            }
+        }
+        simulateLatency();
+        logger.debug("Replaying {} from {}", url, bodyPath);
+        return new Entry(url, headers, bodyPath);
+    }
+
+    /**
+     * Відкриває тіло збереженої відповіді потоком. Потік слід закрити після
+     * читання.
+     *
+     * @param url адреса запиту
+     * @return тіло відповіді
+     * @throws IOException якщо відповіді немає в архіві
+     */
+    public InputStream openText(String url) throws IOException {
+        Entry entry = lookup(url);
+        return new GZIPInputStream(Files.newInputStream(entry.body));
+    }
+
+    /**
+     * Повертає тіло збереженої відповіді як текст UTF-8.
+     *
+     * @param url адреса запиту
+     * @return тіло відповіді
+     * @throws IOException якщо відповіді немає в архіві
+     */
+    public String replayText(String url) throws IOException {
+        Entry entry = lookup(url);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(entry.body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Записує тіло збереженої відповіді у файл.
+     *
+     * @param entry збережена відповідь
+     * @param dest цільовий файл
+     * @param maxBytes максимальний розмір (0 або менше — без ліміту)
+     * @return кількість записаних байтів
+     * @throws IOException у разі помилок читання/запису або перевищення ліміту
+     */
+    public long replayTo(Entry entry, Path dest, long maxBytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(entry.body))) {
+            return StreamingDownload.toFile(Channels.newChannel(in), dest, maxBytes);
+        }
+    }
+
+    /**
+     * Зберігає текстову відповідь, якщо увімкнено запис.
+     *
+     * @param url адреса запиту
+     * @param headers заголовки відповіді
+     * @param body тіло відповіді
+     */
+    public void recordText(String url, Map<String, String> headers, String body) {
+        if (!isRecording()) {
+            return;
+        }
+        try {
+            store(url, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            logger.warn("Failed to record {} to network archive: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Зберігає вміст файлу як відповідь, якщо увімкнено запис.
+     *
+     * @param url адреса запиту
+     * @param headers заголовки відповіді
+     * @param file файл із тілом відповіді
+     */
+    public void recordFile(String url, Map<String, String> headers, Path file) {
+        if (!isRecording()) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            store(url, headers, in);
+        } catch (IOException e) {
+            logger.warn("Failed to record {} to network archive: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Чи є відповідь для URL в архіві.
+     *
+     * @param url адреса запиту
+     * @return true, якщо відповідь збережено
+     */
+    public boolean contains(String url) {
+        String key = keyOf(url);
+        return Files.isReadable(dir.resolve(key + ".meta")) && Files.isReadable(dir.resolve(key + ".body.gz"));
+    }
+
+    private void store(String url, Map<String, String> headers, InputStream body) throws IOException {
+        Files.createDirectories(dir);
+        String key = keyOf(url);
+        Path bodyPath = dir.resolve(key + ".body.gz");
+        Path bodyTemp = dir.resolve(key + ".body.gz.tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(bodyTemp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            body.transferTo(out);
+        }
+        StreamingDownload.moveAtomically(bodyTemp, bodyPath);
+
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        headers.forEach((name, value) -> {
+            if (name != null && value != null) {
+                meta.setProperty(HEADER_PREFIX + name.toLowerCase(Locale.ROOT), value);
+            }
+        });
+        Path metaPath = dir.resolve(key + ".meta");
+        Path metaTemp = dir.resolve(key + ".meta.tmp");
+        try (OutputStream out = Files.newOutputStream(metaTemp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            meta.store(out, "Network archive entry");
+        }
+        StreamingDownload.moveAtomically(metaTemp, metaPath);
+        logger.debug("Recorded {} to network archive as {}", url, key);
+    }
+
+    private void simulateLatency() throws InterruptedIOException {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during replay latency");
+        }
+    }
+
+    private static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -15,38 +15,259 @@
  */
 package net.ukrcom.cip_gov_ua_getter;
 
-import org.json.JSONArray;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import org.json.JSONException;
-import org.json.JSONObject;
+import org.json.JSONTokener;
 
 /**
  * Клас, що розбирає JSON з переліком розпоряджень.
  *
+ * Відповідь API читається потоково: кожен пост одразу перетворюється на
+ * {@link ArticlePost}, а всі поля, крім id, date, status, title і
+ * attachments (id, mimeType, originalFileName), пропускаються без побудови
+ * дерева JSON. Тож пам'ять не зростає разом із параметром size.
+ *
  * @author olden
  */
 public class ParseCGUArticlesJson {
 
-    protected final JSONObject json;
-    protected final JSONArray posts;
+    protected final List<ArticlePost> posts = new ArrayList<>();
 
     /**
-     * Конструктор класа. Розбираємо сформований JSON з розпорядженнями.
+     * Конструктор класа. Розбираємо відповідь API з розпорядженнями.
      *
-     * @param json_data
-     * @throws JSONException
+     * @param json_data - масив постів у форматі JSON
+     * @throws JSONException якщо відповідь не є масивом постів
      */
-    public ParseCGUArticlesJson(String json_data) throws JSONException {
-        this.json = new JSONObject(json_data);
-        this.posts = json.getJSONArray("posts");
+    public ParseCGUArticlesJson(Reader json_data) throws JSONException {
+        forEach(json_data, this.posts::add);
     }
 
     /**
-     * Повертаємо масив з розібраними й відокремленими один від одного
-     * розпорядженнями, для подальшого аналізу.
+     * Повертаємо розібрані й відокремлені один від одного розпорядження, для
+     * подальшого аналізу.
      *
-     * @return @throws JSONException
+     * @return перелік постів
      */
-    public JSONArray getPosts() throws JSONException {
+    public List<ArticlePost> getPosts() {
         return this.posts;
     }
+
+    /**
+     * Потоково розбирає масив постів, передаючи кожен пост обробнику щойно
+     * його прочитано.
+     *
+     * @param json_data - масив постів у форматі JSON
+     * @param consumer - обробник постів
+     * @return кількість прочитаних постів
+     * @throws JSONException якщо відповідь не є масивом постів
+     */
+    public static int forEach(Reader json_data, Consumer<ArticlePost> consumer) throws JSONException {
+        JSONTokener t = new JSONTokener(json_data);
+        expect(t, '[');
+        int count = 0;
+        char c = t.nextClean();
+        if (c == ']') {
+            return count;
+        }
+        t.back();
+        while (true) {
+            consumer.accept(readPost(t));
+            count++;
+            c = t.nextClean();
+            if (c == ']') {
+                return count;
+            }
+            if (c != ',') {
+                throw t.syntaxError("Expected ',' or ']' after post");
+            }
+        }
+    }
+
+    private static ArticlePost readPost(JSONTokener t) {
+        String id = null;
+        String date = null;
+        String status = null;
+        String title = null;
+        List<ArticlePost.Attachment> attachments = new ArrayList<>();
+        expect(t, '{');
+        if (!emptyObject(t)) {
+            do {
+                switch (readKey(t)) {
+                    case "id" ->
+                        id = readScalar(t);
+                    case "date" ->
+                        date = readScalar(t);
+                    case "status" ->
+                        status = readScalar(t);
+                    case "title" ->
+                        title = readScalar(t);
+                    case "attachments" ->
+                        readAttachments(t, attachments);
+                    default ->
+                        skipValue(t);
+                }
+            } while (nextMember(t));
+        }
+        return new ArticlePost(id, date, status, title, attachments);
+    }
+
+    private static void readAttachments(JSONTokener t, List<ArticlePost.Attachment> attachments) {
+        char c = t.nextClean();
+        if (c != '[') {
+            // null або інше значення замість масиву — вкладень немає
+            t.back();
+            skipValue(t);
+            return;
+        }
+        c = t.nextClean();
+        if (c == ']') {
+            return;
+        }
+        t.back();
+        while (true) {
+            String id = null;
+            String mimeType = null;
+            String fileName = null;
+            expect(t, '{');
+            if (!emptyObject(t)) {
+                do {
+                    switch (readKey(t)) {
+                        case "id" ->
+                            id = readScalar(t);
+                        case "mimeType" ->
+                            mimeType = readScalar(t);
+                        case "originalFileName" ->
+                            fileName = readScalar(t);
+                        default ->
+                            skipValue(t);
+                    }
+                } while (nextMember(t));
+            }
+            attachments.add(new ArticlePost.Attachment(id, mimeType, fileName));
+            c = t.nextClean();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw t.syntaxError("Expected ',' or ']' after attachment");
+            }
+        }
+    }
+
+    private static void expect(JSONTokener t, char expected) {
+        char c = t.nextClean();
+        if (c != expected) {
+            throw t.syntaxError("Expected '" + expected + "' but found '" + c + "'");
+        }
+    }
+
+    private static boolean emptyObject(JSONTokener t) {
+        if (t.nextClean() == '}') {
+            return true;
+        }
+        t.back();
+        return false;
+    }
+
+    private static String readKey(JSONTokener t) {
+        expect(t, '"');
+        String key = t.nextString('"');
+        expect(t, ':');
+        return key;
+    }
+
+    /**
+     * Переходить до наступного поля об'єкта.
+     *
+     * @return false, якщо об'єкт закінчився
+     */
+    private static boolean nextMember(JSONTokener t) {
+        char c = t.nextClean();
+        if (c == ',') {
+            return true;
+        }
+        if (c == '}') {
+            return false;
+        }
+        throw t.syntaxError("Expected ',' or '}'");
+    }
+
+    /**
+     * Читає рядок, число чи логічне значення як текст. Для null і вкладених
+     * структур повертає null.
+     */
+    private static String readScalar(JSONTokener t) {
+        char c = t.nextClean();
+        if (c == '"') {
+            return t.nextString('"');
+        }
+        t.back();
+        if (c == '{' || c == '[') {
+            skipValue(t);
+            return null;
+        }
+        String raw = t.nextTo(",}]").trim();
+        if (raw.isEmpty()) {
+            throw t.syntaxError("Missing value");
+        }
+        return raw.equals("null") ? null : raw;
+    }
+
+    /**
+     * Пропускає значення будь-якого типу, не будуючи його.
+     */
+    private static void skipValue(JSONTokener t) {
+        char c = t.nextClean();
+        if (c == '"') {
+            skipString(t);
+            return;
+        }
+        if (c != '{' && c != '[') {
+            t.back();
+            if (t.nextTo(",}]").trim().isEmpty()) {
+                throw t.syntaxError("Missing value");
+            }
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            c = t.next();
+            switch (c) {
+                case '"' ->
+                    skipString(t);
+                case '{', '[' ->
+                    depth++;
+                case '}', ']' ->
+                    depth--;
+                case 0 ->
+                    throw t.syntaxError("Unterminated value");
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Пропускає рядок після відкривної лапки, не збираючи його вміст.
+     */
+    private static void skipString(JSONTokener t) {
+        while (true) {
+            char c = t.next();
+            switch (c) {
+                case '"' -> {
+                    return;
+                }
+                case '\\' ->
+                    t.next();
+                case 0 ->
+                    throw t.syntaxError("Unterminated string");
+                default -> {
+                }
+            }
+        }
+    }
 }
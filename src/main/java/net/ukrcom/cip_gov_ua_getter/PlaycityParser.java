@@ -98,7 +98,6 @@ public class PlaycityParser extends AbstractPDFParser {
                 }
                 Path primaryPdfPath = manualDir.resolve(rawName);
                 downloadPdf(targetUrl, primaryPdfPath.toString());
-                logger.info("Successfully downloaded PDF from {} to {}", targetUrl, primaryPdfPath);
 
                 domains.addAll(extractDomainsFromPDF(primaryPdfPath.toString()));
                 if (debug) {
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Конвеєр обробки розпоряджень: класифікація поста ⮕ завантаження/читання
+ * вкладення ⮕ валідація доменів ⮕ злиття в {@link BlockedObjects}. Етапи
+ * працюють у віртуальних потоках і з'єднані обмеженими чергами, тож повільний
+ * етап пригальмовує попередні, а не накопичує дані в пам'яті.
+ *
+ * Завантаження і валідація йдуть паралельно, тож вкладення доходять до
+ * злиття не в порядку постів, а в порядку завершення. Злиття виконується
+ * одним потоком лише для того, щоб BlockedObjects не змінювався одночасно
+ * з кількох потоків; порядок злиття на результат не впливає: для кожного
+ * домену лишається подія з найпізнішою датою поста, а за однакової дати
+ * блокування переважає розблокування.
+ *
+ * Кожен етап завершується, отримавши маркер кінця, і передає його далі,
+ * коли завершився останній потік етапу. Потік, що вийшов із циклу без
+ * маркера (наприклад, перерваний), вичитує решту своєї черги, щоб попередній
+ * етап не заблокувався на повній черзі.
+ *
+ * @author olden
+ */
+public class PostPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostPipeline.class);
+    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+    private static final Item POISON = new Item(null, false, null, null, null);
+
+    private final Properties prop;
+    private final BlockedObjects bo;
+    private final TitleClassifier classifier;
+    private final BrowserPool browserPool;
+    private final FetchScheduler scheduler;
+    private final SessionHttpClient httpClient;
+    private final ValidationCache validationCache;
+    private final int queueCapacity;
+    private final int validateWorkers;
+    private final StageStats classifyStats = new StageStats("classify");
+    private final StageStats fetchStats = new StageStats("fetch");
+    private final StageStats validateStats = new StageStats("validate");
+    private final StageStats mergeStats = new StageStats("merge");
+
+    /**
+     * Вкладення поста, що проходить етапами конвеєра.
+     */
+    private static final class Item {
+
+        final String date;
+        final boolean block;
+        final String id;
+        final String mimeType;
+        final String fileName;
+        GetPrescript gp;
+        String[] domains;
+
+        Item(String date, boolean block, String id, String mimeType, String fileName) {
+            this.date = date;
+            this.block = block;
+            this.id = id;
+            this.mimeType = mimeType;
+            this.fileName = fileName;
+        }
+    }
+
+    /**
+     * Обробка одного елемента на етапі. Повертає елемент для наступного етапу
+     * або null, якщо далі передавати нічого.
+     */
+    @FunctionalInterface
+    private interface StageTask {
+
+        Item process(Item item) throws Exception;
+    }
+
+    /**
+     * Лічильники пропускної здатності етапу.
+     */
+    private static final class StageStats {
+
+        final String name;
+        final LongAdder items = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        void put(BlockingQueue<Item> out, Item item) throws InterruptedException {
+            long start = System.nanoTime();
+            out.put(item);
+            blockedNanos.add(System.nanoTime() - start);
+        }
+
+        void log(long wallNanos) {
+            long count = items.sum();
+            double seconds = wallNanos / 1e9;
+            logger.info("Pipeline stage {}: {} items, {} failed, busy {} ms, blocked on next stage {} ms, {} items/s",
+                    name, count, failed.sum(), busyNanos.sum() / 1_000_000, blockedNanos.sum() / 1_000_000,
+                    String.format("%.2f", seconds > 0 ? count / seconds : 0));
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     * @param bo - перелік доменів, до якого зливаються результати
+     * @param classifier - класифікатор заголовків постів
+     * @param browserPool - спільний пул браузерів
+     * @param scheduler - планувальник завантажень
+     * @param httpClient - HTTP-клієнт швидкого шляху
+     */
+    public PostPipeline(Properties p, BlockedObjects bo, TitleClassifier classifier,
+            BrowserPool browserPool, FetchScheduler scheduler, SessionHttpClient httpClient) {
+        this.prop = p;
+        this.bo = bo;
+        this.classifier = classifier;
+        this.browserPool = browserPool;
+        this.scheduler = scheduler;
+        this.httpClient = httpClient;
+        this.validationCache = new ValidationCache(p);
+        this.queueCapacity = parsePositiveInt(p, "pipeline_queue_capacity", 64);
+        this.validateWorkers = parsePositiveInt(p, "validate_workers", Runtime.getRuntime().availableProcessors());
+        logger.debug("Pipeline queue capacity {}, validate workers {}", queueCapacity, validateWorkers);
+    }
+
+    private static int parsePositiveInt(Properties p, String key, int def) {
+        try {
+            return Math.max(1, Integer.parseInt(p.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
+
+    /**
+     * Проганяє пости через конвеєр і чекає, доки всі етапи завершаться.
+     *
+     * @param posts пости з відповіді API
+     * @throws InterruptedException якщо очікування перервано
+     */
+    public void run(List<ArticlePost> posts) throws InterruptedException {
+        long started = System.nanoTime();
+        int fetchWorkers = scheduler.getConcurrency();
+        BlockingQueue<Item> fetchQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> validateQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> mergeQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.ofVirtual().name("pipeline-classify").start(
+                () -> classify(posts, fetchQueue, fetchWorkers)));
+
+        AtomicInteger fetchRemaining = new AtomicInteger(fetchWorkers);
+        List<Future<?>> fetchFutures = new ArrayList<>();
+        for (int i = 0; i < fetchWorkers; i++) {
+            fetchFutures.add(scheduler.submit(worker(fetchStats, fetchQueue, validateQueue,
+                    fetchRemaining, validateWorkers, this::fetch)));
+        }
+
+        AtomicInteger validateRemaining = new AtomicInteger(validateWorkers);
+        for (int i = 0; i < validateWorkers; i++) {
+            threads.add(Thread.ofVirtual().name("pipeline-validate-", i).start(
+                    worker(validateStats, validateQueue, mergeQueue, validateRemaining, 1, this::validate)));
+        }
+
+        threads.add(Thread.ofVirtual().name("pipeline-merge").start(
+                worker(mergeStats, mergeQueue, null, new AtomicInteger(1), 0, this::merge)));
+
+        for (Future<?> f : fetchFutures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                logger.error("Fetch worker failed: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long wall = System.nanoTime() - started;
+        for (StageStats stats : List.of(classifyStats, fetchStats, validateStats, mergeStats)) {
+            stats.log(wall);
+        }
+        validationCache.logStats();
+    }
+
+    /**
+     * Повертає кількість елементів, що не пройшли котрийсь з етапів під час
+     * останнього запуску.
+     *
+     * @return кількість збоїв
+     */
+    public long getFailedCount() {
+        return classifyStats.failed.sum() + fetchStats.failed.sum()
+                + validateStats.failed.sum() + mergeStats.failed.sum();
+    }
+
+    private Runnable worker(StageStats stats, BlockingQueue<Item> in, BlockingQueue<Item> out,
+            AtomicInteger remaining, int downstreamWorkers, StageTask task) {
+        return () -> {
+            boolean poisoned = false;
+            try {
+                while (true) {
+                    Item item = in.take();
+                    if (item == POISON) {
+                        poisoned = true;
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    Item result = null;
+                    try {
+                        result = task.process(item);
+                    } catch (Throwable e) {
+                        stats.failed.increment();
+                        logger.error("Error processing attachment {} at stage {}: {}", item.id, stats.name, e.getMessage(), e);
+                    }
+                    stats.items.increment();
+                    stats.busyNanos.add(System.nanoTime() - start);
+                    if (result != null && out != null) {
+                        stats.put(out, result);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!poisoned) {
+                    drain(stats, in);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    sendPoison(out, downstreamWorkers);
+                }
+            }
+        };
+    }
+
+    /**
+     * Вичитує чергу до маркера кінця, рахуючи пропущені елементи збоями.
+     * Переривання відкладається до кінця, інакше попередній етап
+     * заблокується на повній черзі.
+     */
+    private static void drain(StageStats stats, BlockingQueue<Item> in) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    Item item = in.take();
+                    if (item == POISON) {
+                        return;
+                    }
+                    stats.failed.increment();
+                    logger.error("Attachment {} dropped at stage {}: worker stopped", item.id, stats.name);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Передає маркер кінця кожному потоку наступного етапу. Переривання
+     * відкладається до кінця: без маркера наступний етап не завершиться.
+     */
+    private static void sendPoison(BlockingQueue<Item> out, int count) {
+        if (out == null) {
+            return;
+        }
+        boolean interrupted = Thread.interrupted();
+        try {
+            for (int i = 0; i < count; i++) {
+                while (true) {
+                    try {
+                        out.put(POISON);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void classify(List<ArticlePost> posts, BlockingQueue<Item> out, int downstreamWorkers) {
+        try {
+            for (int i = 0; i < posts.size(); i++) {
+                long start = System.nanoTime();
+                List<Item> items = new ArrayList<>();
+                try {
+                    classifyPost(posts.get(i), items);
+                } catch (Throwable e) {
+                    classifyStats.failed.increment();
+                    logger.error("Error processing post {}: {}", i, e.getMessage(), e);
+                }
+                classifyStats.items.increment();
+                classifyStats.busyNanos.add(System.nanoTime() - start);
+                for (Item item : items) {
+                    classifyStats.put(out, item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sendPoison(out, downstreamWorkers);
+        }
+    }
+
+    private void classifyPost(ArticlePost post, List<Item> items) {
+        String title = required(post.getTitle(), "title");
+
+        // Ігноруємо непубліковані пости
+        if (!required(post.getStatus(), "status").equalsIgnoreCase("PUBLISHED")) {
+            logger.warn("Skipping unpublished post: {} - {}", post.getDate(), title);
+            return;
+        }
+
+        // Перевіряємо, чи пост стосується блокування/обмеження, і визначаємо дію
+        TitleClassifier.Category category = classifier.classify(title);
+        if (category == TitleClassifier.Category.IRRELEVANT) {
+            logger.warn("Skipping unrelated post: {} - {}", post.getDate(), title);
+            return;
+        }
+        boolean block = category == TitleClassifier.Category.BAN;
+
+        String date = required(post.getDate(), "date");
+        for (ArticlePost.Attachment attachment : post.getAttachments()) {
+            items.add(new Item(
+                    date, block,
+                    required(attachment.getId(), "attachment id"),
+                    required(attachment.getMimeType(), "mimeType"),
+                    required(attachment.getOriginalFileName(), "originalFileName")));
+        }
+    }
+
+    private static String required(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Post has no " + field);
+        }
+        return value;
+    }
+
+    private Item fetch(Item item) throws IOException {
+        item.gp = new GetPrescript(prop, item.id, item.mimeType)
+                .setBrowserPool(browserPool)
+                .setRateLimiter(scheduler.getRateLimiter())
+                .setRetryPolicy(scheduler.getRetryPolicy())
+                .setHttpClient(httpClient)
+                .setValidationCache(validationCache)
+                .setOrigFileName(item.fileName)
+                .getPrescriptFrom()
+                .storePrescriptTo();
+        if (item.gp.isFetchFailed()) {
+            throw new IOException("Content of attachment " + item.id + " is not available");
+        }
+
+        // Оновлюємо дату файлу відповідно до post.date
+        setFileDate(new File(item.gp.getFileName()), item.date);
+        return item;
+    }
+
+    private Item validate(Item item) {
+        if (item.mimeType.equalsIgnoreCase("text/plain")) {
+            item.domains = item.gp.getBodyPrescript();
+        }
+        item.gp = null;
+        return item;
+    }
+
+    private Item merge(Item item) {
+        if (item.domains == null) {
+            logger.info("{} {} {} {} \"{}\"",
+                    LocalDateTime.now(), item.date, item.block ? "+" : "-", item.id, item.fileName);
+            return null;
+        }
+        for (String domain : item.domains) {
+            if (domain.length() > 255) {
+                logger.warn("Skipping domain due to invalid length: {}", domain);
+                continue;
+            }
+            BlockedDomain bd = new BlockedDomain(domain, item.block, item.date);
+            if (bo.addBlockedDomainName(bd, "attachment:" + item.id)) {
+                logger.info("{} {} [ {} \"{}\"]",
+                        LocalDateTime.now(), bd, item.id, item.fileName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Встановлює дату модифікації файлу на основі дати з поста. Нічого не
+     * робить, якщо файл недоступний або дата некоректна.
+     *
+     * @param file файл для оновлення
+     * @param dateStr дата у форматі ISO 8601 (наприклад,
+     * "2023-12-07T10:44:00Z")
+     */
+    private static void setFileDate(File file, String dateStr) {
+        if (!file.exists() || !file.canWrite()) {
+            logger.warn("Cannot set date for file {}: file does not exist or is not writable", file.getAbsolutePath());
+            return;
+        }
+
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(dateStr, ISO_FORMATTER);
+            long millis = dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(millis));
+            logger.debug("Set file date for {} to {}", file.getAbsolutePath(), dateStr);
+        } catch (DateTimeParseException e) {
+            logger.warn("Failed to parse date '{}' for file {}: {}", dateStr, file.getAbsolutePath(), e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Failed to set date for file {}: {}", file.getAbsolutePath(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Завантаження документа з докачуванням. Дані пишуться у «&lt;ім'я&gt;.part»,
+ * який не видаляється при обриві з'єднання: наступна спроба (паузи між
+ * спробами задає {@link RetryPolicy}, а також у наступному запуску) продовжує
+ * його запитом Range. Заголовок If-Range з ETag
+ * чи Last-Modified частини гарантує, що до старої частини не буде дописано
+ * шматок зміненого документа — тоді сервер віддає документ повністю.
+ *
+ * @author olden
+ */
+public class ResumableDownload {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableDownload.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-\\d+/(\\d+|\\*)");
+
+    private final String url;
+    private final Path dest;
+    private final Path partPath;
+    private final SSLSocketFactory sslSocketFactory;
+    private final RetryPolicy retryPolicy;
+    private final int maxAttempts;
+    private int attempts;
+    private long transferred;
+    private long resumedBytes;
+
+    /**
+     * Конструктор класа.
+     *
+     * @param url адреса документа
+     * @param dest цільовий файл
+     * @param sslSocketFactory фабрика сокетів для HTTPS або null
+     * @param retryPolicy політика повторів
+     * @param maxAttempts кількість спроб при обривах з'єднання
+     */
+    public ResumableDownload(String url, Path dest, SSLSocketFactory sslSocketFactory, RetryPolicy retryPolicy,
+            int maxAttempts) {
+        this.url = url;
+        this.dest = dest;
+        this.partPath = dest.resolveSibling(dest.getFileName() + ".part");
+        this.sslSocketFactory = sslSocketFactory;
+        this.retryPolicy = retryPolicy;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Завантажує документ, за потреби продовжуючи збережену частину.
+     *
+     * @param validator метадані наявної повної копії для умовного запиту або
+     * null
+     * @return метадані нової копії або null, якщо документ не змінився (304)
+     * @throws IOException якщо всі спроби вичерпано, сервер повернув
+     * неповторюваний статус або сталася помилка SSL
+     */
+    public DownloadMetadata fetch(DownloadMetadata validator) throws IOException {
+        long started = System.nanoTime();
+        DownloadMetadata result = retryPolicy.execute("Downloading " + dest.getFileName(), url, maxAttempts,
+                () -> attempt(validator));
+        if (result != null) {
+            logStats(System.nanoTime() - started, result.getSize());
+        }
+        return result;
+    }
+
+    private DownloadMetadata attempt(DownloadMetadata validator) throws IOException {
+        attempts++;
+        DownloadMetadata partial = DownloadMetadata.load(partPath);
+        long offset = Files.exists(partPath) ? Files.size(partPath) : 0;
+        String ifRange = partial.getEtag() != null ? partial.getEtag() : partial.getLastModified();
+        boolean resume = offset > 0 && url.equals(partial.getUrl()) && ifRange != null;
+        if (offset > 0 && !resume) {
+            logger.info("Discarding partial download {}: no validator to resume it safely", partPath);
+            discardPartial();
+            offset = 0;
+        }
+
+        URLConnection connection = open();
+        if (resume) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            connection.setRequestProperty("If-Range", ifRange);
+        } else if (validator != null) {
+            if (validator.getEtag() != null) {
+                connection.setRequestProperty("If-None-Match", validator.getEtag());
+            }
+            if (validator.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", validator.getLastModified());
+            }
+        }
+
+        int status = 200;
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConn = (HttpURLConnection) connection;
+            status = httpConn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && !resume) {
+                httpConn.disconnect();
+                return null;
+            }
+            if (status == 416) {
+                httpConn.disconnect();
+                discardPartial();
+                throw new IOException("Range not satisfiable, restarting download of " + url);
+            }
+            if (status < 200 || status >= 300) {
+                httpConn.disconnect();
+                throw new HttpStatusException(status, "GET " + url);
+            }
+        }
+
+        boolean append = resume && status == HttpURLConnection.HTTP_PARTIAL
+                && rangeStart(connection.getHeaderField("Content-Range")) == offset;
+        if (resume && !append) {
+            logger.info("Server sent the full document for {} (changed or no range support), restarting", url);
+            offset = 0;
+        } else if (append) {
+            logger.info("Resuming download of {} from byte {}", url, offset);
+            resumedBytes = offset;
+        }
+
+        // Валідатори відповіді зберігаються до початку запису: по них частину можна буде продовжити
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        new DownloadMetadata().setUrl(url).setEtag(etag).setLastModified(lastModified).setSize(-1).store(partPath);
+
+        long expected = connection.getContentLengthLong();
+        long copied = 0;
+        try (InputStream in = connection.getInputStream();
+                ReadableByteChannel source = Channels.newChannel(in);
+                FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                copied += buffer.remaining();
+                transferred += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(false);
+        }
+        if (expected >= 0 && copied < expected) {
+            throw new IOException("Connection closed after " + copied + " of " + expected + " bytes, "
+                    + Files.size(partPath) + " bytes kept for resume");
+        }
+
+        StreamingDownload.moveAtomically(partPath, dest);
+        Files.deleteIfExists(DownloadMetadata.sidecarOf(partPath));
+        return new DownloadMetadata()
+                .setUrl(url)
+                .setEtag(etag)
+                .setLastModified(lastModified)
+                .setSize(Files.size(dest))
+                .setSha256(sha256Of(dest));
+    }
+
+    private URLConnection open() throws IOException {
+        URLConnection connection;
+        try {
+            connection = new URI(url).toURL().openConnection();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+        connection.setConnectTimeout(15_000);
+        connection.setReadTimeout(60_000);
+        if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            HttpsURLConnection httpsConn = (HttpsURLConnection) connection;
+            httpsConn.setSSLSocketFactory(sslSocketFactory);
+            httpsConn.setHostnameVerifier((hostname, session) -> true);
+        }
+        return connection;
+    }
+
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        Matcher m = CONTENT_RANGE.matcher(contentRange.trim());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    private void discardPartial() throws IOException {
+        Files.deleteIfExists(partPath);
+        Files.deleteIfExists(DownloadMetadata.sidecarOf(partPath));
+    }
+
+    /**
+     * Рахує SHA-256 вмісту файлу.
+     *
+     * @param file файл
+     * @return хеш у шістнадцятковому вигляді
+     * @throws IOException у разі помилок читання
+     */
+    static String sha256Of(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void logStats(long elapsedNanos, long size) {
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        logger.info("Downloaded {}: {} bytes ({} resumed, {} transferred) in {} ms over {} attempt(s), {} KB/s",
+                url, size, resumedBytes, transferred, millis, attempts,
+                String.format("%.1f", transferred / 1024.0 / (millis / 1000.0)));
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Єдина політика повторів для мережевих запитів: експоненційна пауза з
+ * джитером, спільний на весь запуск бюджет повторів і запобіжник (circuit
+ * breaker) для кожного хоста. Після retry_circuit_threshold збоїв поспіль
+ * хост вважається недоступним, і до кінця запуску запити до нього одразу
+ * завершуються помилкою, не витрачаючи час на очікування.
+ *
+ * Повторюються мережеві збої, помилки Playwright і статуси 401/403/429/5xx. Решта
+ * статусів HTTP, відсутній ресурс (FileNotFoundException), перевищення розміру
+ * файлу та помилки SSL повертаються викликачу одразу.
+ *
+ * До спрацювання запобіжника наближають лише збої з'єднання, тайм-аути та
+ * 5xx. Відповіді 401/403/429 означають, що хост доступний: вони
+ * повторюються, але лічильник збоїв поспіль скидають, а на 429 реагує
+ * пригальмовуванням {@link HostRateLimiter}. Інакше сплеск 429 під час
+ * паралельних завантажень розмикав би запобіжник до кінця запуску.
+ *
+ * @author olden
+ */
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final double jitter;
+    private final int budget;
+    private final int circuitThreshold;
+    private final AtomicInteger budgetLeft;
+    private final AtomicBoolean budgetExhaustedLogged = new AtomicBoolean();
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Дія, яку можна повторити.
+     *
+     * @param <T> тип результату
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+
+        T run() throws IOException;
+    }
+
+    /**
+     * Виняток: запобіжник хоста розімкнено, запит не виконувався.
+     */
+    public static class CircuitOpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String host) {
+            super("Circuit breaker is open for " + host + ", skipping request");
+        }
+    }
+
+    /**
+     * Стан запобіжника і лічильники одного хоста.
+     */
+    private static final class HostState {
+
+        final LongAdder calls = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder shortCircuited = new LongAdder();
+        int consecutiveFailures;
+        volatile boolean open;
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+        }
+
+        /**
+         * @return true, якщо саме цей збій розімкнув запобіжник
+         */
+        synchronized boolean onFailure(int threshold) {
+            consecutiveFailures++;
+            if (!open && consecutiveFailures >= threshold) {
+                open = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public RetryPolicy(Properties p) {
+        this.maxAttempts = (int) parsePositive(p, "retry_max_attempts", 3);
+        this.baseDelayMs = parsePositive(p, "retry_base_delay_ms", 1000);
+        this.maxDelayMs = Math.max(this.baseDelayMs, parsePositive(p, "retry_max_delay_ms", 30000));
+        this.budget = (int) parsePositive(p, "retry_budget", 50);
+        this.circuitThreshold = (int) parsePositive(p, "retry_circuit_threshold", 5);
+        double parsedJitter = 0.5;
+        try {
+            parsedJitter = Math.min(1, Math.max(0, Double.parseDouble(p.getProperty("retry_jitter", "0.5").trim())));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid retry_jitter value, using default: 0.5");
+        }
+        this.jitter = parsedJitter;
+        this.budgetLeft = new AtomicInteger(this.budget);
+        logger.debug("Retry policy: {} attempts, delay {}..{} ms, jitter {}, budget {}, circuit threshold {}",
+                maxAttempts, baseDelayMs, maxDelayMs, jitter, budget, circuitThreshold);
+    }
+
+    private static long parsePositive(Properties p, String key, long def) {
+        try {
+            long value = Long.parseLong(p.getProperty(key, String.valueOf(def)).trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Використовуємо значення за замовчуванням
+        }
+        logger.warn("Invalid {} value, using default: {}", key, def);
+        return def;
+    }
+
+    /**
+     * Виконує дію з кількістю спроб retry_max_attempts.
+     *
+     * @param <T> тип результату
+     * @param what опис дії для логів
+     * @param url адреса запиту; за її хостом ведеться запобіжник
+     * @param call дія
+     * @return результат дії
+     * @throws IOException остання помилка дії або {@link CircuitOpenException}
+     */
+    public <T> T execute(String what, String url, Call<T> call) throws IOException {
+        return execute(what, url, this.maxAttempts, call);
+    }
+
+    /**
+     * Виконує дію із заданою кількістю спроб.
+     *
+     * @param <T> тип результату
+     * @param what опис дії для логів
+     * @param url адреса запиту; за її хостом ведеться запобіжник
+     * @param attempts максимальна кількість спроб
+     * @param call дія
+     * @return результат дії
+     * @throws IOException остання помилка дії або {@link CircuitOpenException}
+     */
+    public <T> T execute(String what, String url, int attempts, Call<T> call) throws IOException {
+        String host = HostRateLimiter.hostOf(url);
+        HostState state = hosts.computeIfAbsent(host, h -> new HostState());
+        state.calls.increment();
+        for (int attempt = 1;; attempt++) {
+            if (state.open) {
+                state.shortCircuited.increment();
+                throw new CircuitOpenException(host);
+            }
+            try {
+                T result = call.run();
+                state.onSuccess();
+                return result;
+            } catch (IOException | RuntimeException e) {
+                if (!isRetryable(e)) {
+                    if (e instanceof HttpStatusException) {
+                        // Хост відповів, отже він доступний
+                        state.onSuccess();
+                    }
+                    state.failures.increment();
+                    throw e;
+                }
+                if (!isHostFailure(e)) {
+                    // 401/403/429: хост відповів, запобіжник не наближається до спрацювання
+                    state.onSuccess();
+                } else if (state.onFailure(circuitThreshold)) {
+                    logger.error("Circuit breaker opened for {} after {} consecutive failures, failing fast for the rest of the run",
+                            host, circuitThreshold);
+                }
+                if (attempt >= attempts || state.open || !takeBudget()) {
+                    state.failures.increment();
+                    throw e;
+                }
+                state.retries.increment();
+                long delay = backoff(attempt);
+                logger.warn("{}: attempt {}/{} failed for {}: {}, retrying in {} ms",
+                        what, attempt, attempts, url, e.getMessage(), delay);
+                pause(delay);
+            }
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof HttpStatusException) {
+            // 401/403 — сервер відхилив сесію; після повторного прогріву запит може пройти
+            HttpStatusException h = (HttpStatusException) e;
+            return h.isThrottling() || h.getStatus() == 401 || h.getStatus() == 403;
+        }
+        if (e instanceof StreamingDownload.SizeLimitExceededException
+                || e instanceof FileNotFoundException
+                || e instanceof CircuitOpenException
+                || e instanceof SSLException) {
+            return false;
+        }
+        // Перерване очікування не повторюємо, тайм-аут сокета — повторюємо
+        return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+    }
+
+    /**
+     * Чи свідчить повторюваний збій про недоступність хоста: так для
+     * мережевих збоїв, тайм-аутів і 5xx, ні для 401/403/429.
+     */
+    private static boolean isHostFailure(Exception e) {
+        return !(e instanceof HttpStatusException) || ((HttpStatusException) e).getStatus() >= 500;
+    }
+
+    private boolean takeBudget() {
+        if (budgetLeft.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            return true;
+        }
+        if (budgetExhaustedLogged.compareAndSet(false, true)) {
+            logger.error("Retry budget of {} retries per run is exhausted, failing without retries", budget);
+        }
+        return false;
+    }
+
+    private long backoff(int attempt) {
+        long exp = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 30));
+        return (long) (exp * (1 - jitter) + ThreadLocalRandom.current().nextDouble() * exp * jitter);
+    }
+
+    private static void pause(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * Повертає кількість виконаних повторів за запуск.
+     *
+     * @return кількість повторів
+     */
+    public long getRetries() {
+        return hosts.values().stream().mapToLong(s -> s.retries.sum()).sum();
+    }
+
+    /**
+     * Повертає кількість розімкнених запобіжників.
+     *
+     * @return кількість хостів із розімкненим запобіжником
+     */
+    public long getTrips() {
+        return hosts.values().stream().filter(s -> s.open).count();
+    }
+
+    /**
+     * Повертає кількість запитів, відхилених розімкненим запобіжником.
+     *
+     * @return кількість відхилених запитів
+     */
+    public long getShortCircuited() {
+        return hosts.values().stream().mapToLong(s -> s.shortCircuited.sum()).sum();
+    }
+
+    /**
+     * Виводить статистику повторів за хостами.
+     */
+    public void logStats() {
+        hosts.forEach((host, s) -> logger.info(
+                "Retry stats for {}: {} calls, {} retries, {} failed, {} short-circuited, circuit {}",
+                host, s.calls.sum(), s.retries.sum(), s.failures.sum(), s.shortCircuited.sum(),
+                s.open ? "OPEN" : "closed"));
+        logger.info("Retry totals: {} retries, {} of {} budget left, {} circuits opened",
+                getRetries(), budgetLeft.get(), budget, getTrips());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import com.microsoft.playwright.options.Cookie;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Швидкий шлях завантаження через {@link HttpClient} (HTTP/2, повторне
+ * використання з'єднань). Playwright використовується лише для того, щоб
+ * пройти перевірки сайту й отримати cookies та User-Agent сесії. Якщо сервер
+ * починає віддавати сторінки-перевірки (challenge), сесія оновлюється, а
+ * запит виконується через браузер.
+ *
+ * Вмикається властивістю fetch_mode=http (за замовчуванням — browser).
+ *
+ * @author olden
+ */
+public class SessionHttpClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionHttpClient.class);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(15);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final boolean enabled;
+    private final BrowserPool browserPool;
+    private final String secChUa;
+    private final int challengeLimit;
+    private final HttpClient client;
+    private final Map<String, Credentials> credentials = new ConcurrentHashMap<>();
+    private final ReentrantLock harvestLock = new ReentrantLock();
+    private final AtomicInteger consecutiveChallenges = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong challenges = new AtomicLong();
+    private final AtomicLong harvests = new AtomicLong();
+    private volatile boolean disabled;
+
+    /**
+     * Виняток: замість даних сервер повернув сторінку-перевірку. Запит слід
+     * повторити через браузер.
+     */
+    public static class ChallengeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public ChallengeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Cookies та User-Agent, отримані з браузерної сесії.
+     */
+    private static final class Credentials {
+
+        final String cookieHeader;
+        final String userAgent;
+
+        Credentials(String cookieHeader, String userAgent) {
+            this.cookieHeader = cookieHeader;
+            this.userAgent = userAgent;
+        }
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     * @param pool - пул браузерів для отримання сесії
+     */
+    public SessionHttpClient(Properties p, BrowserPool pool) {
+        this.enabled = p.getProperty("fetch_mode", "browser").trim().equalsIgnoreCase("http");
+        this.browserPool = pool;
+        this.secChUa = p.getProperty(
+                "secChUa",
+                "\"Chromium\";v=\"129\", \"Not:A-Brand\";v=\"24\", \"Google Chrome\";v=\"129\""
+        ).trim();
+        int parsedLimit = 3;
+        try {
+            parsedLimit = Math.max(1, Integer.parseInt(p.getProperty("http_challenge_limit", "3").trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid http_challenge_limit value, using default: 3");
+        }
+        this.challengeLimit = parsedLimit;
+        this.client = this.enabled
+                ? HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .connectTimeout(CONNECT_TIMEOUT)
+                        .build()
+                : null;
+        logger.debug("HTTP fast path {}", this.enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Чи слід використовувати швидкий шлях. Після http_challenge_limit
+     * перевірок поспіль він вимикається до кінця запуску.
+     *
+     * @return true, якщо швидкий шлях увімкнено і він не вимкнувся
+     */
+    public boolean isActive() {
+        return this.enabled && !this.disabled;
+    }
+
+    /**
+     * Виконує GET-запит і повертає тіло відповіді потоком. Потік слід
+     * закрити після читання.
+     *
+     * @param url адреса запиту
+     * @param accept значення заголовка Accept
+     * @return тіло відповіді
+     * @throws IOException у разі мережевих помилок, неуспішного статусу або
+     * сторінки-перевірки ({@link ChallengeException})
+     */
+    public InputStream openStream(String url, String accept) throws IOException {
+        HttpResponse<InputStream> response = send(url, accept, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            checkResponse(response, url);
+        } catch (IOException e) {
+            response.body().close();
+            throw e;
+        }
+        return response.body();
+    }
+
+    /**
+     * Потоково завантажує відповідь на GET-запит у файл.
+     *
+     * @param url адреса запиту
+     * @param dest цільовий файл
+     * @param maxBytes максимальний розмір файлу
+     * @return кількість записаних байтів
+     * @throws IOException у разі мережевих помилок, неуспішного статусу,
+     * перевищення розміру або сторінки-перевірки ({@link ChallengeException})
+     */
+    public long download(String url, Path dest, long maxBytes) throws IOException {
+        HttpResponse<InputStream> response = send(url, "text/plain, */*", HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            checkResponse(response, url);
+            long declared = response.headers().firstValueAsLong("content-length").orElse(-1);
+            if (declared > maxBytes) {
+                throw new StreamingDownload.SizeLimitExceededException(declared, maxBytes);
+            }
+            return StreamingDownload.toFile(Channels.newChannel(body), dest, maxBytes);
+        }
+    }
+
+    private <T> HttpResponse<T> send(String url, String accept, HttpResponse.BodyHandler<T> handler) throws IOException {
+        if (!isActive()) {
+            throw new IllegalStateException("HTTP fast path is not active");
+        }
+        String baseUrl = BrowserPool.baseUrlOf(url);
+        Credentials c = credentials(baseUrl);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", c.userAgent)
+                .header("Accept", accept)
+                .header("Accept-Language", "uk,en-US;q=0.9,en;q=0.8,ru;q=0.7")
+                .header("Referer", baseUrl)
+                .header("Sec-Ch-Ua", this.secChUa)
+                .header("Sec-Fetch-Dest", "empty")
+                .header("Sec-Fetch-Mode", "cors")
+                .header("Sec-Fetch-Site", "same-origin")
+                .GET();
+        if (!c.cookieHeader.isEmpty()) {
+            builder.header("Cookie", c.cookieHeader);
+        }
+        requests.incrementAndGet();
+        try {
+            return client.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        }
+    }
+
+    private void checkResponse(HttpResponse<?> response, String url) throws IOException {
+        int status = response.statusCode();
+        String contentType = response.headers().firstValue("content-type").orElse("").toLowerCase();
+        boolean challenge = response.headers().firstValue("cf-mitigated").isPresent()
+                || (contentType.contains("text/html") && (status == 200 || status == 403 || status == 503));
+        if (challenge) {
+            onChallenge(BrowserPool.baseUrlOf(url));
+            throw new ChallengeException("Challenge page (HTTP " + status + ", " + contentType + ") for " + url);
+        }
+        if (status < 200 || status >= 300) {
+            logger.warn("HTTP  {}: {}", status, url);
+            throw new HttpStatusException(status, "GET " + url);
+        }
+        consecutiveChallenges.set(0);
+    }
+
+    private void onChallenge(String baseUrl) {
+        challenges.incrementAndGet();
+        credentials.remove(baseUrl);
+        // Збережена браузерна сесія теж уже непридатна
+        browserPool.invalidateSavedState();
+        browserPool.closeIdle();
+        int streak = consecutiveChallenges.incrementAndGet();
+        if (streak >= challengeLimit && !disabled) {
+            disabled = true;
+            logger.warn("HTTP fast path got {} challenge pages in a row, using browser for the rest of the run", streak);
+        } else {
+            logger.warn("HTTP fast path got a challenge page for {}, session will be refreshed", baseUrl);
+        }
+    }
+
+    private Credentials credentials(String baseUrl) throws IOException {
+        Credentials c = credentials.get(baseUrl);
+        if (c != null) {
+            return c;
+        }
+        // ReentrantLock замість synchronized, щоб не закріплювати віртуальний потік
+        harvestLock.lock();
+        try {
+            c = credentials.get(baseUrl);
+            if (c == null) {
+                c = harvest(baseUrl);
+                credentials.put(baseUrl, c);
+            }
+            return c;
+        } finally {
+            harvestLock.unlock();
+        }
+    }
+
+    private Credentials harvest(String baseUrl) throws IOException {
+        logger.info("Obtaining browser session for HTTP fast path: {}", baseUrl);
+        Credentials c = browserPool.withPage(baseUrl, page -> {
+            List<Cookie> cookies = page.context().cookies(baseUrl);
+            String cookieHeader = cookies.stream()
+                    .map(cookie -> cookie.name + "=" + cookie.value)
+                    .collect(Collectors.joining("; "));
+            String userAgent = (String) page.evaluate("() => navigator.userAgent");
+            return new Credentials(cookieHeader, userAgent);
+        });
+        harvests.incrementAndGet();
+        // Браузер більше не потрібен, доки сесія дійсна
+        browserPool.closeIdle();
+        return c;
+    }
+
+    /**
+     * Закриває HTTP-клієнт і виводить статистику.
+     */
+    @Override
+    public void close() {
+        if (this.client != null) {
+            this.client.close();
+            logger.info("HTTP fast path stats: {} requests, {} challenge pages, {} session harvests{}",
+                    requests.get(), challenges.get(), harvests.get(), disabled ? ", disabled after challenges" : "");
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Локальний сервер-замінник API cip.gov.ua для навантажувального
+ * тестування. Імітує services/cm/api/articles (page, size, tagId) і
+ * services/cm/api/attachment/download?id= на синтетичних даних: задана
+ * кількість постів про блокування, розблокування та сторонніх, вкладення
+ * text/plain і PDF, задана кількість доменів у файлі. Може вносити збої:
+ * тайм-аути, відповіді 5xx і обірвані тіла.
+ *
+ * Дані генеруються детерміновано із standin_seed і не тримаються в пам'яті,
+ * тож сервер витримує і 100 тис. вкладень. Після запуску досить вказати
+ * urlArticles і urlPrescript, які сервер виводить у лог.
+ *
+ * Запуск: java -cp cip_gov_ua_getter-3.0-all.jar
+ * net.ukrcom.cip_gov_ua_getter.StandInServer [standin.properties]
+ *
+ * @author olden
+ */
+public class StandInServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandInServer.class);
+    private static final String ARTICLES_PATH = "/services/cm/api/articles";
+    private static final String DOWNLOAD_PATH = "/services/cm/api/attachment/download";
+    private static final String[] TLDS = {"com", "net", "org", "ua", "info", "ru"};
+    private static final byte BAN = 0;
+    private static final byte UNBAN = 1;
+    private static final byte OTHER = 2;
+
+    private final int port;
+    private final String tagId;
+    private final long seed;
+    private final int attachmentsPerPost;
+    private final int domainsPerFile;
+    private final int domainPool;
+    private final double pdfRatio;
+    private final double timeoutRatio;
+    private final double errorRatio;
+    private final double truncateRatio;
+    private final long timeoutMs;
+    private final byte[] categories;
+    private final Instant newest;
+    private final Map<String, LongAdder> stats = new HashMap<>();
+    private HttpServer server;
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public StandInServer(Properties p) {
+        this.port = (int) parseLong(p, "standin_port", 8089);
+        this.tagId = p.getProperty("standin_tag_id", "60751").trim();
+        this.seed = parseLong(p, "standin_seed", 1);
+        this.attachmentsPerPost = (int) Math.max(1, parseLong(p, "standin_attachments_per_post", 1));
+        this.domainsPerFile = (int) Math.max(1, parseLong(p, "standin_domains_per_file", 50));
+        this.domainPool = (int) Math.max(1, parseLong(p, "standin_domain_pool", 100_000));
+        this.pdfRatio = parseRatio(p, "standin_pdf_ratio", 0.1);
+        this.timeoutRatio = parseRatio(p, "standin_fail_timeout_ratio", 0);
+        this.errorRatio = parseRatio(p, "standin_fail_5xx_ratio", 0);
+        this.truncateRatio = parseRatio(p, "standin_fail_truncate_ratio", 0);
+        this.timeoutMs = parseLong(p, "standin_timeout_ms", 65_000);
+
+        int ban = (int) parseLong(p, "standin_ban_posts", 800);
+        int unban = (int) parseLong(p, "standin_unban_posts", 100);
+        int other = (int) parseLong(p, "standin_other_posts", 100);
+        // Категорії постів перемішуються детерміновано, щоб типи чергувалися
+        this.categories = new byte[ban + unban + other];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = i < ban ? BAN : i < ban + unban ? UNBAN : OTHER;
+        }
+        Random random = new Random(seed);
+        for (int i = categories.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte t = categories[i];
+            categories[i] = categories[j];
+            categories[j] = t;
+        }
+        this.newest = Instant.parse("2025-01-01T00:00:00Z").plus(categories.length, ChronoUnit.HOURS);
+        for (String key : new String[]{"articles", "download", "timeouts", "errors", "truncated"}) {
+            stats.put(key, new LongAdder());
+        }
+    }
+
+    private static long parseLong(Properties p, String key, long def) {
+        try {
+            return Math.max(0, Long.parseLong(p.getProperty(key, String.valueOf(def)).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
+
+    private static double parseRatio(Properties p, String key, double def) {
+        try {
+            return Math.min(1, Math.max(0, Double.parseDouble(p.getProperty(key, String.valueOf(def)).trim())));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} value, using default: {}", key, def);
+            return def;
+        }
+    }
+
+    /**
+     * Запускає сервер. Кожен запит обробляється у власному віртуальному
+     * потоці.
+     *
+     * @return цей об'єкт для ланцюгових викликів
+     * @throws IOException якщо порт недоступний
+     */
+    public StandInServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(ARTICLES_PATH, this::handleArticles);
+        server.createContext(DOWNLOAD_PATH, this::handleDownload);
+        server.createContext("/", this::handleRoot);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        logger.info("Stand-in server started: {} posts, {} attachments", categories.length,
+                (long) categories.length * attachmentsPerPost);
+        logger.info("urlArticles={}{}?page=0&size=1000&tagId={}", base, ARTICLES_PATH, tagId);
+        logger.info("urlPrescript={}{}?id=", base, DOWNLOAD_PATH);
+        return this;
+    }
+
+    /**
+     * Зупиняє сервер і виводить статистику запитів.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            logStats();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void logStats() {
+        logger.info("Stand-in stats: {} article pages, {} downloads, injected {} timeouts, {} 5xx, {} truncated bodies",
+                stats.get("articles").sum(), stats.get("download").sum(), stats.get("timeouts").sum(),
+                stats.get("errors").sum(), stats.get("truncated").sum());
+    }
+
+    private void handleRoot(HttpExchange ex) throws IOException {
+        byte[] body = "<!DOCTYPE html><html><head><title>stand-in</title></head><body></body></html>"
+                .getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleArticles(HttpExchange ex) throws IOException {
+        stats.get("articles").increment();
+        Map<String, String> query = queryOf(ex.getRequestURI());
+        if (injectFailure(ex)) {
+            return;
+        }
+        int page = (int) parseQuery(query, "page", 0);
+        int size = (int) Math.max(1, parseQuery(query, "size", 20));
+        boolean tagMatches = !query.containsKey("tagId") || tagId.equals(query.get("tagId"));
+        long from = (long) page * size;
+        long to = tagMatches ? Math.min(categories.length, from + size) : 0;
+
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer w = new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8)) {
+            w.write('[');
+            for (long i = from; i < to; i++) {
+                if (i > from) {
+                    w.write(',');
+                }
+                w.write(postJson((int) i));
+            }
+            w.write(']');
+        }
+    }
+
+    private void handleDownload(HttpExchange ex) throws IOException {
+        stats.get("download").increment();
+        Map<String, String> query = queryOf(ex.getRequestURI());
+        long id = parseQuery(query, "id", -1);
+        // id вкладення = номер поста * 1000 + порядковий номер у пості
+        long number = id / 1000;
+        if (number < 1 || number > categories.length || id % 1000 >= attachmentsPerPost) {
+            ex.sendResponseHeaders(404, -1);
+            ex.close();
+            return;
+        }
+        if (injectFailure(ex)) {
+            return;
+        }
+        byte[] body;
+        if (isPdf(id)) {
+            ex.getResponseHeaders().set("Content-Type", "application/pdf");
+            body = "%PDF-1.4\n%stand-in\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+        } else {
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            StringBuilder sb = new StringBuilder(domainsPerFile * 16);
+            Random random = new Random(seed * 31 + id);
+            for (int k = 0; k < domainsPerFile; k++) {
+                int n = random.nextInt(domainPool);
+                sb.append("domain").append(n).append('.').append(TLDS[n % TLDS.length]).append('\n');
+            }
+            body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        if (ThreadLocalRandom.current().nextDouble() < truncateRatio) {
+            // Оголошуємо повну довжину, а передаємо половину й обриваємо з'єднання
+            stats.get("truncated").increment();
+            ex.sendResponseHeaders(200, body.length);
+            OutputStream out = ex.getResponseBody();
+            out.write(body, 0, body.length / 2);
+            out.flush();
+            throw new IOException("Injected truncated body for id " + id);
+        }
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Вносить тайм-аут або 5xx із заданою ймовірністю.
+     *
+     * @return true, якщо відповідь уже надіслано
+     */
+    private boolean injectFailure(HttpExchange ex) throws IOException {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < timeoutRatio) {
+            stats.get("timeouts").increment();
+            try {
+                Thread.sleep(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.sendResponseHeaders(504, -1);
+            ex.close();
+            return true;
+        }
+        if (roll < timeoutRatio + errorRatio) {
+            stats.get("errors").increment();
+            ex.sendResponseHeaders(ThreadLocalRandom.current().nextBoolean() ? 500 : 503, -1);
+            ex.close();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isPdf(long attachmentId) {
+        return new Random(seed * 17 + attachmentId).nextDouble() < pdfRatio;
+    }
+
+    /**
+     * Пост з індексом i; пости впорядковано від найновішого.
+     */
+    private String postJson(int i) {
+        int number = categories.length - i;
+        String title = switch (categories[i]) {
+            case BAN ->
+                "Розпорядження про блокування доменних імен №" + number;
+            case UNBAN ->
+                "Розпорядження про розблокування доменних імен №" + number;
+            default ->
+                "Новини центру №" + number;
+        };
+        StringBuilder sb = new StringBuilder(256 + attachmentsPerPost * 96);
+        sb.append("{\"id\":").append(number)
+                .append(",\"title\":").append(JSONObject.quote(title))
+                .append(",\"status\":\"PUBLISHED\"")
+                .append(",\"date\":\"").append(newest.minus(i, ChronoUnit.HOURS)).append('"')
+                .append(",\"summary\":\"Синтетичний пост для навантажувального тесту\"")
+                .append(",\"tags\":[{\"id\":").append(tagId).append(",\"name\":\"Розпорядження\"}]")
+                .append(",\"attachments\":[");
+        for (int j = 0; j < attachmentsPerPost; j++) {
+            long id = (long) number * 1000 + j;
+            boolean pdf = isPdf(id);
+            if (j > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(id)
+                    .append(",\"mimeType\":\"").append(pdf ? "application/pdf" : "text/plain").append('"')
+                    .append(",\"originalFileName\":\"").append(id).append(pdf ? ".pdf" : ".txt").append('"')
+                    .append(",\"size\":").append(domainsPerFile * 16)
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static Map<String, String> queryOf(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return query;
+    }
+
+    private static long parseQuery(Map<String, String> query, String key, long def) {
+        try {
+            return Long.parseLong(query.getOrDefault(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * Запускає сервер-замінник до завершення процесу.
+     *
+     * @param args шлях до файлу властивостей (опціонально)
+     * @throws Exception у разі помилок запуску
+     */
+    public static void main(String[] args) throws Exception {
+        Properties prop = new Properties();
+        if (args.length > 0) {
+            try (InputStreamReader input = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+                prop.load(input);
+            }
+        }
+        StandInServer standIn = new StandInServer(prop).start();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            standIn.stop();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Потокове збереження завантажень на диск через NIO-канали. Байти пишуться у
+ * тимчасовий файл поряд із цільовим, ліміт розміру перевіряється під час
+ * надходження даних, а готовий файл атомарно переноситься на місце.
+ *
+ * @author olden
+ */
+public final class StreamingDownload {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingDownload.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Виняток, що сигналізує про перевищення допустимого розміру файлу.
+     * Повторювати такий запит немає сенсу.
+     */
+    public static class SizeLimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public SizeLimitExceededException(long size, long maxBytes) {
+            super("File too large: " + size + " bytes, max allowed: " + maxBytes);
+        }
+    }
+
+    private StreamingDownload() {
+    }
+
+    /**
+     * Копіює вміст каналу у файл dest через тимчасовий файл dest.tmp. Якщо
+     * розмір перевищує maxBytes, копіювання переривається, а тимчасовий файл
+     * видаляється.
+     *
+     * @param source канал-джерело
+     * @param dest цільовий файл
+     * @param maxBytes максимальний розмір у байтах (0 або менше — без ліміту)
+     * @return кількість записаних байтів
+     * @throws IOException у разі помилок читання/запису або перевищення ліміту
+     */
+    public static long toFile(ReadableByteChannel source, Path dest, long maxBytes) throws IOException {
+        Path tempPath = dest.resolveSibling(dest.getFileName() + ".tmp");
+        long total = 0;
+        try (FileChannel out = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                total += buffer.remaining();
+                if (maxBytes > 0 && total > maxBytes) {
+                    throw new SizeLimitExceededException(total, maxBytes);
+                }
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        moveAtomically(tempPath, dest);
+        logger.debug("Streamed {} bytes to {}", total, dest);
+        return total;
+    }
+
+    /**
+     * Атомарно переносить файл на місце цільового, а якщо файлова система
+     * цього не підтримує — звичайним переміщенням.
+     *
+     * @param source тимчасовий файл
+     * @param target цільовий файл
+     * @throws IOException у разі помилок переміщення
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.warn("Atomic move not supported, falling back to regular move: {}", e.getMessage());
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
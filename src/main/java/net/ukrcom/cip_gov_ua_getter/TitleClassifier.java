@@ -0,0 +1,215 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Класифікатор заголовків постів: блокування, розблокування або пост, що не
+ * стосується блокувань.
+ *
+ * Ключові слова з ban_keywords і unban_keywords компілюються один раз під час
+ * створення, некоректні шаблони відкидаються одразу з попередженням.
+ * Ключові слова без метасимволів регулярних виразів шукаються одним
+ * проходом автомата Ахо-Корасік для обох категорій, решта об'єднуються в
+ * один шаблон-альтернативу на категорію.
+ *
+ * Пост вважається розблокуванням, лише якщо він відповідає і ban_keywords, і
+ * unban_keywords (як і раніше, заголовок розблокування містить слово
+ * «блокування»).
+ *
+ * @author olden
+ */
+public class TitleClassifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(TitleClassifier.class);
+    private static final String DEFAULT_BAN_KEYWORDS = "блокування|обмеження доступу|реалізацію.*обмежувальних";
+    private static final String DEFAULT_UNBAN_KEYWORDS = "розблокування|припинення тимчасового";
+    private static final Pattern META_CHARS = Pattern.compile("[\\\\.\\[\\]{}()<>*+?^$|]");
+    private static final int BAN = 1;
+    private static final int UNBAN = 2;
+
+    /**
+     * Результат класифікації заголовка.
+     */
+    public enum Category {
+        BAN, UNBAN, IRRELEVANT
+    }
+
+    private final Pattern banPattern;
+    private final Pattern unbanPattern;
+    private final LiteralMatcher literals;
+
+    /**
+     * Конструктор класа. Ключові слова беруться з ban_keywords і
+     * unban_keywords (розділювач — |).
+     *
+     * @param p - об'єкт властивостей
+     */
+    public TitleClassifier(Properties p) {
+        this(keywords(p, "ban_keywords", DEFAULT_BAN_KEYWORDS, "блокування"),
+                keywords(p, "unban_keywords", DEFAULT_UNBAN_KEYWORDS, "розблокування"));
+    }
+
+    /**
+     * Конструктор класа.
+     *
+     * @param banKeywords - ключові слова постів про блокування
+     * @param unbanKeywords - ключові слова постів про розблокування
+     */
+    public TitleClassifier(String[] banKeywords, String[] unbanKeywords) {
+        Map<String, Integer> literalKeywords = new HashMap<>();
+        this.banPattern = compile("ban_keyword", banKeywords, BAN, literalKeywords);
+        this.unbanPattern = compile("unban_keyword", unbanKeywords, UNBAN, literalKeywords);
+        this.literals = literalKeywords.isEmpty() ? null : new LiteralMatcher(literalKeywords);
+        logger.debug("Title classifier: {} literal keywords, ban pattern {}, unban pattern {}",
+                literalKeywords.size(), banPattern, unbanPattern);
+    }
+
+    private static String[] keywords(Properties p, String key, String def, String fallback) {
+        String[] keywords = Arrays.stream(p.getProperty(key, def).split("\\|"))
+                .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        if (keywords.length == 0) {
+            logger.warn("No {} defined in configuration, using default: {}", key, fallback);
+            keywords = new String[]{fallback};
+        }
+        logger.debug("Loaded {}: {}", key, Arrays.toString(keywords));
+        return keywords;
+    }
+
+    /**
+     * Відокремлює літеральні ключові слова і компілює решту в один шаблон.
+     *
+     * @return шаблон або null, якщо всі ключові слова літеральні
+     */
+    private static Pattern compile(String name, String[] keywords, int category, Map<String, Integer> literalKeywords) {
+        List<String> regexes = new ArrayList<>();
+        for (String keyword : keywords) {
+            if (!META_CHARS.matcher(keyword).find()) {
+                literalKeywords.merge(keyword, category, (a, b) -> a | b);
+                continue;
+            }
+            try {
+                Pattern.compile(keyword);
+                regexes.add("(?:" + keyword + ")");
+            } catch (PatternSyntaxException e) {
+                logger.warn("Invalid {} pattern '{}', ignoring it: {}", name, keyword, e.getDescription());
+            }
+        }
+        return regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes));
+    }
+
+    /**
+     * Класифікує заголовок поста.
+     *
+     * @param title заголовок
+     * @return категорія поста
+     */
+    public Category classify(String title) {
+        int found = literals != null ? literals.scan(title) : 0;
+        if ((found & BAN) == 0 && (banPattern == null || !banPattern.matcher(title).find())) {
+            return Category.IRRELEVANT;
+        }
+        if ((found & UNBAN) != 0 || (unbanPattern != null && unbanPattern.matcher(title).find())) {
+            return Category.UNBAN;
+        }
+        return Category.BAN;
+    }
+
+    /**
+     * Автомат Ахо-Корасік для літеральних ключових слів. Повертає маску
+     * категорій, ключові слова яких трапилися в тексті.
+     */
+    private static final class LiteralMatcher {
+
+        private final List<Map<Character, Integer>> next = new ArrayList<>();
+        private final List<Integer> output = new ArrayList<>();
+        private final int[] fail;
+        private final int all;
+
+        LiteralMatcher(Map<String, Integer> keywords) {
+            newState();
+            int mask = 0;
+            for (Map.Entry<String, Integer> e : keywords.entrySet()) {
+                int state = 0;
+                for (char c : e.getKey().toCharArray()) {
+                    Integer to = next.get(state).get(c);
+                    if (to == null) {
+                        to = newState();
+                        next.get(state).put(c, to);
+                    }
+                    state = to;
+                }
+                output.set(state, output.get(state) | e.getValue());
+                mask |= e.getValue();
+            }
+            this.all = mask;
+
+            // Посилання невдачі будуються обходом дерева в ширину
+            this.fail = new int[next.size()];
+            ArrayDeque<Integer> queue = new ArrayDeque<>(next.get(0).values());
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> e : next.get(state).entrySet()) {
+                    int child = e.getValue();
+                    int f = fail[state];
+                    while (f > 0 && !next.get(f).containsKey(e.getKey())) {
+                        f = fail[f];
+                    }
+                    Integer to = state == 0 ? null : next.get(f).get(e.getKey());
+                    fail[child] = to != null ? to : 0;
+                    output.set(child, output.get(child) | output.get(fail[child]));
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int newState() {
+            next.add(new HashMap<>());
+            output.add(0);
+            return next.size() - 1;
+        }
+
+        int scan(String text) {
+            int found = 0;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                Integer to = next.get(state).get(c);
+                while (to == null && state > 0) {
+                    state = fail[state];
+                    to = next.get(state).get(c);
+                }
+                state = to != null ? to : 0;
+                found |= output.get(state);
+                if (found == all) {
+                    break;
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import com.ibm.icu.util.VersionInfo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.validator.routines.DomainValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Постійний кеш результатів валідації вкладень. Для кожного вкладення
+ * зберігається перелік валідних доменів у компактному двійковому файлі,
+ * ключ якого — SHA-256 вмісту вкладення разом з відбитком налаштувань
+ * валідатора (SERVICE_SUBDOMAINS, версії правил валідації, ICU і вмісту
+ * таблиці TLD). Незмінений файл не перечитується й не валідується повторно.
+ *
+ * Каталог задає властивість validation_cache_dir (за замовчуванням
+ * ./validation-cache); порожнє значення вимикає кеш. Під час створення кешу
+ * видаляються записи, не використані довше за validation_cache_max_age_days
+ * днів (180), а якщо записів більше за validation_cache_max_entries (20000),
+ * — найдавніше використані понад цю кількість.
+ *
+ * @author olden
+ */
+public class ValidationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidationCache.class);
+    private static final int MAGIC = 0x43475556; // "CGUV"
+    private static final int FORMAT_VERSION = 1;
+    // Змінювати разом з правилами в DomainValidatorUtil, щоб старі результати не використовувалися
+    static final int VALIDATION_RULES_VERSION = 1;
+
+    private final Path dir;
+    private final String configHash;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final int maxEntries;
+    private final int maxAgeDays;
+
+    /**
+     * Конструктор класа.
+     *
+     * @param p - об'єкт властивостей
+     */
+    public ValidationCache(Properties p) {
+        String dirStr = p.getProperty("validation_cache_dir", "./validation-cache").trim();
+        Path parsedDir = null;
+        if (!dirStr.isEmpty()) {
+            try {
+                parsedDir = Files.createDirectories(Paths.get(dirStr).normalize());
+            } catch (IOException e) {
+                logger.warn("Cannot create validation cache directory {}, cache disabled: {}", dirStr, e.getMessage());
+            }
+        }
+        this.dir = parsedDir;
+        this.configHash = configHashOf(p);
+        this.maxEntries = parsePositiveInt(p, "validation_cache_max_entries", 20000);
+        this.maxAgeDays = parsePositiveInt(p, "validation_cache_max_age_days", 180);
+        if (this.dir != null) {
+            prune();
+        }
+        logger.debug("Validation cache {} (config {})", this.dir != null ? this.dir : "disabled", this.configHash);
+    }
+
+    /**
+     * Чи увімкнено кеш.
+     *
+     * @return true, якщо каталог кешу доступний
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Повертає збережений результат валідації.
+     *
+     * @param contentSha256 SHA-256 вмісту вкладення
+     * @return перелік доменів або null, якщо результату немає чи він
+     * непридатний
+     */
+    public String[] load(String contentSha256) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Path file = fileOf(contentSha256);
+        if (!Files.isRegularFile(file)) {
+            misses.increment();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(configHash) || !in.readUTF().equals(contentSha256)) {
+                misses.increment();
+                return null;
+            }
+            String[] domains = new String[in.readInt()];
+            for (int i = 0; i < domains.length; i++) {
+                domains[i] = in.readUTF();
+            }
+            hits.increment();
+            touch(file);
+            return domains;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring damaged validation cache entry {}: {}", file, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Атомарно зберігає результат валідації.
+     *
+     * @param contentSha256 SHA-256 вмісту вкладення
+     * @param domains валідні домени
+     */
+    public void store(String contentSha256, String[] domains) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path file = fileOf(contentSha256);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(configHash);
+                out.writeUTF(contentSha256);
+                out.writeInt(domains.length);
+                for (String domain : domains) {
+                    out.writeUTF(domain);
+                }
+            }
+            StreamingDownload.moveAtomically(temp, file);
+            stores.increment();
+        } catch (IOException e) {
+            logger.warn("Failed to store validation cache entry {}: {}", file, e.getMessage());
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ex) {
+                logger.debug("Failed to delete {}: {}", temp, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Видаляє застарілі записи та записи понад validation_cache_max_entries,
+     * починаючи з найдавніше використаних. Час використання — час зміни
+     * файлу, який оновлюється при кожному влучанні.
+     */
+    private void prune() {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(f -> f.getFileName().toString().endsWith(".bin")).collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.warn("Failed to list validation cache {}: {}", dir, e.getMessage());
+            return;
+        }
+        Map<Path, FileTime> used = new HashMap<>();
+        for (Path f : files) {
+            try {
+                used.put(f, Files.getLastModifiedTime(f));
+            } catch (IOException e) {
+                used.put(f, FileTime.fromMillis(0));
+            }
+        }
+        files.sort(Comparator.comparing(used::get));
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays);
+        int excess = files.size() - maxEntries;
+        int removed = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path f = files.get(i);
+            if (i >= excess && used.get(f).toMillis() >= cutoff) {
+                break;
+            }
+            try {
+                if (Files.deleteIfExists(f)) {
+                    removed++;
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to delete {}: {}", f, e.getMessage());
+            }
+        }
+        if (removed > 0) {
+            logger.info("Pruned {} of {} validation cache entries in {}", removed, files.size(), dir);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Failed to touch {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static int parsePositiveInt(Properties p, String key, int defaultValue) {
+        try {
+            int value = Integer.parseInt(p.getProperty(key, Integer.toString(defaultValue)).trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Нижче — попередження з типовим значенням
+        }
+        logger.warn("Invalid {} value, using default: {}", key, defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * Виводить статистику кешу.
+     */
+    public void logStats() {
+        if (isEnabled()) {
+            logger.info("Validation cache: {} hits, {} misses, {} stored", hits.sum(), misses.sum(), stores.sum());
+        }
+    }
+
+    private Path fileOf(String contentSha256) {
+        return dir.resolve(sha256(contentSha256 + ":" + configHash) + ".bin");
+    }
+
+    private static String configHashOf(Properties p) {
+        String subdomains = Arrays.stream(p.getProperty("SERVICE_SUBDOMAINS",
+                "www,ftp,mail,api,blog,shop,login,admin,web,secure,m,mobile,app,dev,test,m").split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.joining(","));
+        return sha256(String.join("\n",
+                "rules=" + VALIDATION_RULES_VERSION,
+                "subdomains=" + subdomains,
+                "icu=" + VersionInfo.ICU_VERSION,
+                "tlds=" + DomainNameTable.of(DomainValidator.getInstance(true)).fingerprint()));
+    }
+
+    private static String sha256(String s) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Перевіряє запис результату {@link BlockedObjects#storeState}: повторний
+ * запуск із незмінним переліком нічого не переписує, файли змін і файл
+ * номера відповідають різниці переліків, а журнал IXFR зберігає лише блоки
+ * останніх blocked_delta_keep номерів.
+ *
+ * @author olden
+ */
+class BlockedObjectsTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private Properties props() {
+        Properties p = new Properties();
+        p.setProperty("blocked_result", result().toString());
+        p.setProperty("blocked_delta_keep", "2");
+        p.setProperty("blocked_outputs", "ixfr:" + dir.resolve("blocked.ixfr"));
+        return p;
+    }
+
+    private Path result() {
+        return dir.resolve("blocked.result.txt");
+    }
+
+    private Path sibling(String suffix) {
+        return dir.resolve("blocked.result.txt" + suffix);
+    }
+
+    private void store(String... domains) throws IOException {
+        BlockedObjects blocked = new BlockedObjects(props());
+        for (String domain : domains) {
+            blocked.addBlockedDomainName(new BlockedDomain(domain, true, DATE), "attachment:1");
+        }
+        blocked.storeState();
+    }
+
+    private Properties serialState() throws IOException {
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(sibling(".serial"), StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        return p;
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(String... domains) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (String domain : domains) {
+            digest.update((domain + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Test
+    void unchangedRerunIsNoOp() throws IOException {
+        store("a.com", "b.com");
+        FileTime old = FileTime.fromMillis(1_000_000_000L);
+        Files.setLastModifiedTime(result(), old);
+        Files.setLastModifiedTime(sibling(".serial"), old);
+
+        store("b.com", "a.com");
+
+        assertEquals("1", serialState().getProperty("serial"));
+        assertEquals(old, Files.getLastModifiedTime(result()));
+        assertEquals(old, Files.getLastModifiedTime(sibling(".serial")));
+        assertFalse(Files.exists(sibling(".2.added")));
+        assertFalse(Files.exists(dir.resolve("blocked.ixfr")));
+    }
+
+    @Test
+    void writesDeltasAndSerial() throws IOException, NoSuchAlgorithmException {
+        store("a.com", "b.com");
+        store("b.com", "c.com", "d.com");
+
+        Properties state = serialState();
+        assertEquals("2", state.getProperty("serial"));
+        assertEquals(sha256("b.com", "c.com", "d.com"), state.getProperty("sha256"));
+        assertEquals(List.of("b.com", "c.com", "d.com"), lines(result()));
+        assertEquals(List.of("c.com", "d.com"), lines(sibling(".2.added")));
+        assertEquals(List.of("a.com"), lines(sibling(".2.removed")));
+        assertEquals(List.of("a.com", "b.com"), lines(sibling(".1.added")));
+        assertEquals(List.of(), lines(sibling(".1.removed")));
+        try (var files = Files.list(dir)) {
+            assertFalse(files.anyMatch(f -> f.getFileName().toString().contains(".staged-")));
+        }
+    }
+
+    @Test
+    void keepsRecentDeltasAndIxfrBlocks() throws IOException {
+        store("a.com");
+        store("a.com", "b.com");
+        store("b.com");
+        store("b.com", "c.com");
+
+        assertFalse(Files.exists(sibling(".2.added")));
+        assertTrue(Files.exists(sibling(".3.removed")));
+        assertTrue(Files.exists(sibling(".4.added")));
+
+        List<String> ixfr = lines(dir.resolve("blocked.ixfr"));
+        List<String> blocks = ixfr.stream().filter(l -> l.startsWith("; IXFR ")).collect(Collectors.toList());
+        assertEquals(List.of("; IXFR 2 -> 3", "; IXFR 3 -> 4"), blocks);
+        int last = ixfr.indexOf("; IXFR 3 -> 4");
+        assertEquals(List.of(
+                "; IXFR 3 -> 4",
+                "@ IN SOA localhost. hostmaster.localhost. 3 3600 600 604800 300",
+                "@ IN SOA localhost. hostmaster.localhost. 4 3600 600 604800 300",
+                "c.com CNAME .",
+                "*.c.com CNAME ."), ixfr.subList(last, ixfr.size()));
+    }
+}
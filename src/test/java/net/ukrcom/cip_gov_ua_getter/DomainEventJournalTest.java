@@ -0,0 +1,182 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Перевіряє відтворення {@link DomainEventJournal}: знімок і записи після
+ * нього, обрізання журналу після знімка, відрізання пошкодженого хвоста за
+ * CRC і довжиною та відновлення після збою між обрізанням і перезаписом
+ * знімка.
+ *
+ * @author olden
+ */
+class DomainEventJournalTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private Properties props(int interval) {
+        Properties p = new Properties();
+        p.setProperty("journal", dir.resolve("events.journal").toString());
+        p.setProperty("journal_snapshot_interval", String.valueOf(interval));
+        return p;
+    }
+
+    private Path journalFile() {
+        return dir.resolve("events.journal");
+    }
+
+    private static void add(DomainEventJournal journal, DomainEventStore store, String domain, int day, boolean blocked) {
+        long packed = DomainEventStore.pack(DATE.plusDays(day), blocked);
+        if (store.add(domain, packed)) {
+            journal.append(domain, packed, "attachment:" + day);
+        }
+    }
+
+    private DomainEventStore replay(int interval) throws IOException {
+        DomainEventStore store = new DomainEventStore();
+        new DomainEventJournal(props(interval)).replay(store);
+        return store;
+    }
+
+    private static boolean isBlocked(DomainEventStore store, String domain) {
+        return DomainEventStore.isBlocked(store.latestOf(store.idOf(domain)));
+    }
+
+    @Test
+    void replaysSnapshotAndRecordsAfterIt() throws IOException {
+        DomainEventJournal journal = new DomainEventJournal(props(2));
+        DomainEventStore store = new DomainEventStore();
+        add(journal, store, "a.com", 1, true);
+        add(journal, store, "b.com", 1, true);
+        journal.commit(store);
+        // Після знімка журнал обрізано, знімок містить увесь стан
+        assertEquals(0, Files.size(journalFile()));
+
+        add(journal, store, "b.com", 2, false);
+        journal.commit(store);
+        assertTrue(Files.size(journalFile()) > 0);
+
+        DomainEventStore replayed = replay(2);
+        assertEquals(2, replayed.size());
+        assertTrue(isBlocked(replayed, "a.com"));
+        assertFalse(isBlocked(replayed, "b.com"));
+        assertTrue(new DomainEventJournal(props(2)).verify());
+    }
+
+    @Test
+    void fullResyncsDoNotGrowJournal() throws IOException {
+        for (int run = 0; run < 5; run++) {
+            DomainEventJournal journal = new DomainEventJournal(props(10_000));
+            DomainEventStore store = new DomainEventStore();
+            journal.reset();
+            for (int i = 0; i < 100; i++) {
+                add(journal, store, "site-" + i + ".com", run, true);
+            }
+            journal.commit(store);
+            assertEquals(0, Files.size(journalFile()));
+        }
+        assertEquals(100, replay(10_000).size());
+    }
+
+    @Test
+    void truncatesTornTailAtLastGoodRecord() throws IOException {
+        DomainEventJournal journal = new DomainEventJournal(props(10_000));
+        DomainEventStore store = new DomainEventStore();
+        add(journal, store, "a.com", 1, true);
+        journal.commit(store);
+        long goodLength = Files.size(journalFile());
+        add(journal, store, "b.com", 1, true);
+        journal.commit(store);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile().toFile(), "rw")) {
+            file.setLength(Files.size(journalFile()) - 3);
+        }
+
+        assertFalse(new DomainEventJournal(props(10_000)).verify());
+        DomainEventStore replayed = replay(10_000);
+        assertEquals(1, replayed.size());
+        assertEquals(-1, replayed.idOf("b.com"));
+        assertEquals(goodLength, Files.size(journalFile()));
+        assertTrue(new DomainEventJournal(props(10_000)).verify());
+    }
+
+    @Test
+    void truncatesAtRecordWithBadCrc() throws IOException {
+        DomainEventJournal journal = new DomainEventJournal(props(10_000));
+        DomainEventStore store = new DomainEventStore();
+        add(journal, store, "a.com", 1, true);
+        add(journal, store, "b.com", 1, true);
+        add(journal, store, "c.com", 1, true);
+        journal.commit(store);
+        long firstLength;
+        try (RandomAccessFile file = new RandomAccessFile(journalFile().toFile(), "rw")) {
+            firstLength = 4 + file.readInt() + 4;
+            // Пошкоджуємо байт у тілі другого запису
+            file.seek(firstLength + 4 + 10);
+            int b = file.read();
+            file.seek(firstLength + 4 + 10);
+            file.write(b ^ 0xFF);
+        }
+
+        DomainEventStore replayed = replay(10_000);
+        assertEquals(1, replayed.size());
+        assertTrue(isBlocked(replayed, "a.com"));
+        assertEquals(firstLength, Files.size(journalFile()));
+    }
+
+    @Test
+    void recoversFromCrashBetweenTruncationAndSnapshotRewrite() throws IOException {
+        DomainEventJournal journal = new DomainEventJournal(props(10_000));
+        DomainEventStore store = new DomainEventStore();
+        add(journal, store, "a.com", 1, true);
+        add(journal, store, "b.com", 1, true);
+        journal.commit(store);
+        // Знімок із позицією в кінці журналу, після чого журнал обрізано, а знімок не перезаписано
+        new DomainEventJournal(props(10_000)).rebuild();
+        try (RandomAccessFile file = new RandomAccessFile(journalFile().toFile(), "rw")) {
+            file.setLength(0);
+        }
+        assertFalse(new DomainEventJournal(props(10_000)).verify());
+
+        DomainEventJournal resumed = new DomainEventJournal(props(10_000));
+        DomainEventStore state = new DomainEventStore();
+        resumed.replay(state);
+        assertEquals(2, state.size());
+        assertTrue(resumed.verify());
+
+        // Нові записи після відновлення не відкидаються старою позицією знімка
+        add(resumed, state, "c.com", 2, true);
+        resumed.commit(state);
+        DomainEventStore replayed = replay(10_000);
+        assertEquals(3, replayed.size());
+        assertTrue(isBlocked(replayed, "c.com"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Бенчмарк {@link DomainEventStore} проти об'єктного подання подій
+ * ({@link BlockedDomain} з String та LocalDateTime). Вимірює зайняту купу на
+ * мільйон подій для трьох варіантів: усі події як об'єкти, HashMap останніх
+ * подій та компактне сховище. Перед вимірюванням перевіряє, що HashMap і
+ * сховище дають однаковий перелік заблокованих доменів.
+ *
+ * Запуск після mvn package: java -Xmx2g -cp
+ * target/test-classes:target/cip_gov_ua_getter-3.2.0-all.jar
+ * net.ukrcom.cip_gov_ua_getter.DomainEventStoreBenchmark [подій [доменів]]
+ *
+ * @author olden
+ */
+public class DomainEventStoreBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int domainCount = args.length > 1 ? Integer.parseInt(args[1]) : eventCount / 2;
+        String[] tlds = {"com", "net", "org", "ua", "ru", "info", "xyz", "bet", "casino"};
+        Random random = new Random(1);
+        LocalDateTime base = LocalDateTime.of(2022, 3, 1, 0, 0);
+
+        // Імена й дати генеруються для кожної події окремо, як після розбору файлів
+        int[] domainOf = new int[eventCount];
+        long[] minutesOf = new long[eventCount];
+        boolean[] blockedOf = new boolean[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            domainOf[i] = random.nextInt(domainCount);
+            minutesOf[i] = random.nextInt(1_500_000);
+            blockedOf[i] = random.nextInt(5) != 0;
+        }
+
+        long allBytes = retainedBytes(() -> {
+            List<BlockedDomain> all = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                all.add(event(domainOf[i], tlds, base, minutesOf[i], blockedOf[i]));
+            }
+            return all;
+        });
+
+        long start = System.nanoTime();
+        Map<String, BlockedDomain> latest = latestMap(eventCount, domainOf, tlds, base, minutesOf, blockedOf);
+        TreeSet<String> expected = new TreeSet<>();
+        for (BlockedDomain bd : latest.values()) {
+            if (bd.getIsBlocked()) {
+                expected.add(bd.getDomainName());
+            }
+        }
+        long mapNanos = System.nanoTime() - start;
+        latest = null;
+        long mapBytes = retainedBytes(() -> latestMap(eventCount, domainOf, tlds, base, minutesOf, blockedOf));
+
+        start = System.nanoTime();
+        DomainEventStore store = store(eventCount, domainOf, tlds, base, minutesOf, blockedOf);
+        int[] ids = store.sortedBlockedIds();
+        long storeNanos = System.nanoTime() - start;
+        long storeBytes = retainedBytes(() -> store(eventCount, domainOf, tlds, base, minutesOf, blockedOf));
+
+        if (ids.length != expected.size()) {
+            throw new IllegalStateException("Blocked counts differ: " + ids.length + " vs " + expected.size());
+        }
+        int k = 0;
+        for (String domain : expected) {
+            if (!domain.equals(store.nameOf(ids[k++]))) {
+                throw new IllegalStateException("Results differ for domain: " + domain);
+            }
+        }
+
+        double perMillion = 1_000_000.0 / eventCount / (1 << 20);
+        System.out.printf("%d events, %d domains, %d blocked%n", eventCount, store.size(), ids.length);
+        System.out.printf("All events as BlockedDomain: %.1f MiB per million events%n", allBytes * perMillion);
+        System.out.printf("HashMap of latest events:    %.1f MiB per million events, %d ms%n",
+                mapBytes * perMillion, mapNanos / 1_000_000);
+        System.out.printf("DomainEventStore:            %.1f MiB per million events, %d ms%n",
+                storeBytes * perMillion, storeNanos / 1_000_000);
+    }
+
+    private static Map<String, BlockedDomain> latestMap(int eventCount, int[] domainOf, String[] tlds,
+            LocalDateTime base, long[] minutesOf, boolean[] blockedOf) {
+        Map<String, BlockedDomain> latest = new HashMap<>();
+        for (int i = 0; i < eventCount; i++) {
+            BlockedDomain bd = event(domainOf[i], tlds, base, minutesOf[i], blockedOf[i]);
+            BlockedDomain current = latest.get(bd.getDomainName());
+            if (current == null || isNewer(bd, current)) {
+                latest.put(bd.getDomainName(), bd);
+            }
+        }
+        return latest;
+    }
+
+    private static DomainEventStore store(int eventCount, int[] domainOf, String[] tlds,
+            LocalDateTime base, long[] minutesOf, boolean[] blockedOf) {
+        DomainEventStore store = new DomainEventStore();
+        for (int i = 0; i < eventCount; i++) {
+            BlockedDomain bd = event(domainOf[i], tlds, base, minutesOf[i], blockedOf[i]);
+            store.add(bd.getDomainName(), DomainEventStore.pack(bd.getDateTime(), bd.getIsBlocked()));
+        }
+        return store;
+    }
+
+    private static BlockedDomain event(int domain, String[] tlds, LocalDateTime base, long minutes, boolean blocked) {
+        return new BlockedDomain("site-" + domain + "." + tlds[domain % tlds.length], blocked, base.plusMinutes(minutes));
+    }
+
+    private static boolean isNewer(BlockedDomain candidate, BlockedDomain current) {
+        int compare = candidate.getDateTime().compareTo(current.getDateTime());
+        if (compare != 0) {
+            return compare > 0;
+        }
+        return candidate.getIsBlocked() && !current.getIsBlocked();
+    }
+
+    /**
+     * Зайнята купа, що утримується результатом постачальника.
+     */
+    private static long retainedBytes(Supplier<Object> supplier) {
+        long before = usedHeap();
+        sink = supplier.get();
+        long bytes = usedHeap() - before;
+        sink = null;
+        return bytes;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє, що {@link BlockedObjects} на основі {@link DomainEventStore}
+ * дає той самий перелік заблокованих доменів, що й попередній підхід:
+ * TreeSet подій, упорядкованих {@link BlockedDomainComparator}, з
+ * хронологічним застосуванням кожної події.
+ *
+ * @author olden
+ */
+class DomainEventStoreTest {
+
+    private static final String[] TLDS = {"com", "ua", "укр", "рф"};
+    private static final String[] LABELS = {"d", "сайт", "z-", "ü"};
+
+    @Test
+    void blockedResultMatchesLegacyReplay() {
+        Random random = new Random(22);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int round = 0; round < 200; round++) {
+            BlockedObjects bo = new BlockedObjects(new Properties());
+            TreeSet<BlockedDomain> legacy = new TreeSet<>(new BlockedDomainComparator());
+            for (int i = 0; i < 2000; i++) {
+                String name = LABELS[random.nextInt(LABELS.length)] + random.nextInt(100)
+                        + "." + TLDS[random.nextInt(TLDS.length)];
+                BlockedDomain bd = new BlockedDomain(name, random.nextBoolean(),
+                        base.plusDays(random.nextInt(5)).plusSeconds(random.nextInt(2)));
+                legacy.add(bd);
+                bo.addBlockedDomainName(bd);
+            }
+            TreeSet<String> expected = new TreeSet<>();
+            for (BlockedDomain bd : legacy) {
+                if (bd.getIsBlocked()) {
+                    expected.add(bd.getDomainName());
+                } else {
+                    expected.remove(bd.getDomainName());
+                }
+            }
+            assertEquals(new ArrayList<>(expected), bo.getBlockedResult());
+        }
+    }
+
+    @Test
+    void keepsLatestEventAndPrefersBlockOnSameDate() {
+        DomainEventStore store = new DomainEventStore();
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 0, 0);
+        assertTrue(store.add("a.com", DomainEventStore.pack(date, false)));
+        assertTrue(store.add("a.com", DomainEventStore.pack(date, true)));
+        assertFalse(store.add("a.com", DomainEventStore.pack(date, false)));
+        assertFalse(store.add("a.com", DomainEventStore.pack(date.minusDays(1), false)));
+        assertTrue(DomainEventStore.isBlocked(store.latestOf(store.idOf("a.com"))));
+        assertTrue(store.add("a.com", DomainEventStore.pack(date.plusDays(1), false)));
+        assertFalse(DomainEventStore.isBlocked(store.latestOf(store.idOf("a.com"))));
+        assertEquals(5, store.getEventCount());
+    }
+
+    @Test
+    void growsAndClears() {
+        DomainEventStore store = new DomainEventStore();
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < 100_000; i++) {
+            store.add("site-" + i + ".com", DomainEventStore.pack(date, i % 2 == 0));
+        }
+        assertEquals(100_000, store.size());
+        assertEquals("site-99999.com", store.nameOf(store.idOf("site-99999.com")));
+        assertEquals(50_000, store.sortedBlockedIds().length);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getEventCount());
+        assertEquals(-1, store.idOf("site-1.com"));
+        assertTrue(store.add("site-1.com", DomainEventStore.pack(date, true)));
+        assertEquals(1, store.sortedBlockedIds().length);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.validator.routines.DomainValidator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє, що {@link DomainNameTable} дає ті самі результати, що й
+ * попередній шлях IDN.toASCII ⮕ DomainValidator.isValid ⮕ isValidTld.
+ *
+ * @author olden
+ */
+class DomainNameTableTest {
+
+    private static final String[] PARTS = {
+        "a", "b", "Z", "0", "9", "-", ".", ".", "com", "ua", "ru", "укр", "рф", "казино", "ü",
+        "xn--p1ai", "XN--P1AI", "localhost", "COM", "x".repeat(62), "y".repeat(63), "_", "*", "1com"
+    };
+
+    private final DomainValidator validator = DomainValidator.getInstance(true);
+    private final DomainNameTable table = DomainNameTable.of(validator);
+
+    @Test
+    void tldsMatchDomainValidator() {
+        List<String> tlds = new ArrayList<>();
+        for (DomainValidator.ArrayType type : DomainValidator.ArrayType.values()) {
+            tlds.addAll(Arrays.asList(DomainValidator.getTLDEntries(type)));
+        }
+        tlds.addAll(List.of("COM", "Ua", ".com", "..com", "xn--p1ai", "XN--P1AI", "рф", "localhost", "local",
+                "", "-", "co m", "ком"));
+        for (String tld : tlds) {
+            assertEquals(validator.isValidTld(tld), table.isValidTld(tld), tld);
+        }
+    }
+
+    @Test
+    void candidatesMatchLegacy() {
+        Random random = new Random(18);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder candidate = new StringBuilder();
+            int parts = random.nextInt(10);
+            for (int j = 0; j < parts; j++) {
+                candidate.append(PARTS[random.nextInt(PARTS.length)]);
+            }
+            if (random.nextInt(20) == 0) {
+                candidate.append("x".repeat(240)).append(".com");
+            }
+            String domain = candidate.toString();
+            if (DomainNameTable.isAscii(domain)) {
+                // isValid приймає лише ASCII, не-ASCII імена спершу проходять toAscii
+                assertEquals(validator.isValid(domain), table.isValid(domain), domain);
+            }
+            assertEquals(DomainValidationBenchmark.legacy(validator, domain),
+                    DomainValidationBenchmark.current(table, domain), domain);
+        }
+    }
+
+    @Test
+    void fingerprintFollowsTableContents() {
+        assertEquals(table.fingerprint(), DomainNameTable.of(validator).fingerprint());
+        assertNotEquals(table.fingerprint(), DomainNameTable.of(DomainValidator.getInstance(false)).fingerprint());
+    }
+}
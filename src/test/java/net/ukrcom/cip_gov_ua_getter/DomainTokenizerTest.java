@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє, що {@link DomainTokenizer} дає ті самі кандидати, що й
+ * попередній ланцюжок trim ⮕ видалення протоколу ⮕ replaceAll("\\s+", "")
+ * ⮕ toLowerCase ⮕ пошук шаблоном.
+ *
+ * @author olden
+ */
+class DomainTokenizerTest {
+
+    private static final Pattern DOMAIN_PATTERN
+            = Pattern.compile("[a-zA-Z0-9\\p{L}\\p{M}*-]+(?:\\.[a-zA-Z0-9\\p{L}\\p{M}*-]+)+");
+    // Перші 23 частини — ASCII
+    private static final String[] PARTS = {
+        "a", "B", "z", "Z", "0", "9", "-", "*", ".", ".", ".", "/", ":", "?", " ", "\t", "\n", "\u000B",
+        "\u0001", "HTTP://", "https://", "ftp://", "Ftp:/",
+        "д", "Ж", "ї", "́", "҈", "ः", "İ", "Σ", "ς", "ß", "𝐀", "\uD800", "Ⓐ", "K", "_", "@",
+        ",", ";", "xn--p1ai", "ſ", "ǅ", "ʰ", "٣", " ", "　", "​"
+    };
+
+    private static List<String> legacy(String raw) {
+        String cleaned = raw.trim().replaceAll("(?i)^(https?://|ftp://)", "").replaceAll("\\s+", "").toLowerCase();
+        Matcher matcher = DOMAIN_PATTERN.matcher(cleaned);
+        List<String> domains = new ArrayList<>();
+        while (matcher.find()) {
+            String domain = matcher.group();
+            for (String suffix : new String[]{"/", ":", "?"}) {
+                int end = domain.indexOf(suffix);
+                if (end != -1) {
+                    domain = domain.substring(0, end);
+                }
+            }
+            domains.add(domain);
+        }
+        return domains;
+    }
+
+    private static List<String> tokenize(String raw) {
+        DomainTokenizer tokenizer = new DomainTokenizer(raw);
+        List<String> domains = new ArrayList<>();
+        String domain;
+        while ((domain = tokenizer.next()) != null) {
+            domains.add(domain);
+        }
+        return domains;
+    }
+
+    @Test
+    void candidatesMatchLegacy() {
+        Random random = new Random(16);
+        for (int i = 0; i < 300_000; i++) {
+            boolean ascii = random.nextInt(3) > 0;
+            StringBuilder line = new StringBuilder();
+            int parts = random.nextInt(14);
+            for (int j = 0; j < parts; j++) {
+                line.append(PARTS[random.nextInt(ascii ? 23 : PARTS.length)]);
+            }
+            String raw = line.toString();
+            assertEquals(legacy(raw), tokenize(raw), raw);
+        }
+    }
+
+    @Test
+    void stripsSchemePathAndPort() {
+        assertEquals(List.of("www.example.com"), tokenize("  Https://WWW.Example.COM:8080/path?q=1 "));
+        assertEquals(List.of("сайт.укр", "b.ua"), tokenize("Сайт.УКР, b.ua"));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.io.IOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.validator.routines.DomainValidator;
+
+/**
+ * Бенчмарк {@link DomainNameTable} проти попереднього шляху валідації
+ * кандидата: IDN.toASCII ⮕ DomainValidator.isValid ⮕ isValidTld. Кандидати
+ * беруться з файлів розпоряджень, переданих аргументами, або, якщо файлів
+ * немає, генеруються. Перед вимірюванням перевіряє, що обидва шляхи дають
+ * однакові результати.
+ *
+ * Запуск після mvn package: java -cp
+ * target/test-classes:target/cip_gov_ua_getter-3.2.0-all.jar
+ * net.ukrcom.cip_gov_ua_getter.DomainValidationBenchmark [файл ...]
+ *
+ * @author olden
+ */
+public class DomainValidationBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static volatile int sink;
+
+    public static void main(String[] args) throws IOException {
+        DomainValidator validator = DomainValidator.getInstance(true);
+        DomainNameTable table = DomainNameTable.of(validator);
+
+        List<String> candidates = new ArrayList<>();
+        for (String arg : args) {
+            for (String line : Files.readAllLines(Path.of(arg), StandardCharsets.UTF_8)) {
+                DomainTokenizer tokenizer = new DomainTokenizer(line);
+                String domain;
+                while ((domain = tokenizer.next()) != null) {
+                    candidates.add(domain);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            String[] tlds = {"com", "net", "org", "ua", "ru", "info", "xyz", "bet", "casino", "invalidtld"};
+            Random random = new Random(1);
+            for (int i = 0; i < 200_000; i++) {
+                String label = random.nextInt(10) == 0 ? "казино" + i : "site-" + i;
+                candidates.add(label + "." + tlds[random.nextInt(tlds.length)]);
+            }
+        }
+        System.out.printf("%d candidates, %d TLDs in table%n", candidates.size(), table.size());
+
+        for (String domain : candidates) {
+            if (legacy(validator, domain) != current(table, domain)) {
+                throw new IllegalStateException("Results differ for domain: " + domain);
+            }
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String domain : candidates) {
+                sink += legacy(validator, domain) ? 1 : 0;
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String domain : candidates) {
+                sink += current(table, domain) ? 1 : 0;
+            }
+            long tableNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: DomainValidator %d ns/domain, DomainNameTable %d ns/domain, x%.1f%n",
+                    round, legacyNanos / candidates.size(), tableNanos / candidates.size(),
+                    (double) legacyNanos / tableNanos);
+        }
+    }
+
+    static boolean legacy(DomainValidator validator, String domain) {
+        try {
+            String idn = IDN.toASCII(domain, IDN.ALLOW_UNASSIGNED);
+            int dot = idn.lastIndexOf('.');
+            return validator.isValid(idn) && dot >= 0 && validator.isValidTld(idn.substring(dot));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static boolean current(DomainNameTable table, String domain) {
+        try {
+            String idn = DomainNameTable.toAscii(domain);
+            int dot = idn.lastIndexOf('.');
+            return table.isValid(idn) && dot >= 0 && table.isValidTld(idn.substring(dot));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє потоковий розбір відповіді API в {@link ParseCGUArticlesJson}.
+ *
+ * @author olden
+ */
+class ParseCGUArticlesJsonTest {
+
+    private static List<ArticlePost> parse(String json) {
+        List<ArticlePost> posts = new ArrayList<>();
+        ParseCGUArticlesJson.forEach(new StringReader(json), posts::add);
+        return posts;
+    }
+
+    @Test
+    void readsPostFieldsAndSkipsTheRest() {
+        List<ArticlePost> posts = parse("""
+                [{"id": 42, "date": "2025-01-02T10:00:00", "status": "PUBLISHED",
+                  "title": "Розпорядження \\"№1\\"", "content": {"html": "<p>[skip], {me}</p>", "n": [1, 2]},
+                  "attachments": [{"id": "a1", "mimeType": "text/plain", "originalFileName": "list.txt",
+                                   "size": 10, "meta": null}]},
+                 {"id": 43, "title": null, "attachments": null},
+                 {}]
+                """);
+        assertEquals(3, posts.size());
+        ArticlePost first = posts.get(0);
+        assertEquals("42", first.getId());
+        assertEquals("2025-01-02T10:00:00", first.getDate());
+        assertEquals("PUBLISHED", first.getStatus());
+        assertEquals("Розпорядження \"№1\"", first.getTitle());
+        assertEquals(1, first.getAttachments().size());
+        assertEquals("a1", first.getAttachments().get(0).getId());
+        assertEquals("text/plain", first.getAttachments().get(0).getMimeType());
+        assertEquals("list.txt", first.getAttachments().get(0).getOriginalFileName());
+        assertNull(posts.get(1).getTitle());
+        assertTrue(posts.get(1).getAttachments().isEmpty());
+        assertNull(posts.get(2).getId());
+    }
+
+    @Test
+    void emptyArrayHasNoPosts() {
+        assertEquals(0, ParseCGUArticlesJson.forEach(new StringReader(" [ ] "), post -> {
+        }));
+    }
+
+    @Test
+    void rejectsMalformedResponse() {
+        assertThrows(JSONException.class, () -> parse("{\"error\": \"not an array\"}"));
+        assertThrows(JSONException.class, () -> parse("[{\"id\": 1} {\"id\": 2}]"));
+        assertThrows(JSONException.class, () -> parse("[{\"id\": 1, \"title\": \"unterminated"));
+    }
+
+    @Test
+    void deliversPostsWhileResponseIsStillArriving() {
+        int count = 2000;
+        GeneratedResponse response = new GeneratedResponse(count);
+        long[] readWhenFirstPost = {-1};
+        int parsed = ParseCGUArticlesJson.forEach(response, post -> {
+            if (readWhenFirstPost[0] < 0) {
+                readWhenFirstPost[0] = response.produced;
+            }
+        });
+        assertEquals(count, parsed);
+        // Перший пост доходить до обробника задовго до кінця відповіді
+        assertTrue(readWhenFirstPost[0] < response.produced / 100,
+                readWhenFirstPost[0] + " of " + response.produced);
+    }
+
+    /**
+     * Відповідь API з великим пропущеним полем у кожному пості, що
+     * генерується під час читання і ніколи не існує в пам'яті цілком.
+     */
+    private static final class GeneratedResponse extends Reader {
+
+        private final int count;
+        private int next;
+        private String chunk = "[";
+        private int pos;
+        long produced;
+
+        GeneratedResponse(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == chunk.length()) {
+                if (next > count) {
+                    return -1;
+                }
+                chunk = next == count
+                        ? "]"
+                        : (next > 0 ? "," : "") + "{\"id\":" + next + ",\"content\":\"" + "x".repeat(10_000)
+                        + "\",\"title\":\"post " + next + "\",\"attachments\":[]}";
+                next++;
+                pos = 0;
+            }
+            int n = Math.min(len, chunk.length() - pos);
+            chunk.getChars(pos, pos + n, buf, off);
+            pos += n;
+            produced += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
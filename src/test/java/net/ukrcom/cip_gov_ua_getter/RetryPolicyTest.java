@@ -0,0 +1,84 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє, що запобіжник {@link RetryPolicy} розмикають лише збої
+ * з'єднання та 5xx, а не 401/403/429.
+ *
+ * @author olden
+ */
+class RetryPolicyTest {
+
+    private static final String URL = "https://cip.gov.ua/services/cm/api/attachment/download?id=1";
+
+    private static RetryPolicy policy() {
+        Properties p = new Properties();
+        p.setProperty("retry_max_attempts", "3");
+        p.setProperty("retry_base_delay_ms", "1");
+        p.setProperty("retry_max_delay_ms", "1");
+        p.setProperty("retry_budget", "1000");
+        p.setProperty("retry_circuit_threshold", "3");
+        return new RetryPolicy(p);
+    }
+
+    @Test
+    void throttlingDoesNotOpenCircuit() {
+        RetryPolicy policy = policy();
+        for (int status : new int[]{429, 403, 401}) {
+            for (int i = 0; i < 10; i++) {
+                assertThrows(HttpStatusException.class, () -> policy.execute("test", URL, () -> {
+                    throw new HttpStatusException(status, "throttled");
+                }));
+            }
+        }
+        assertEquals(0, policy.getTrips());
+        assertEquals("ok", assertDoesNotThrow(() -> call(policy)));
+    }
+
+    @Test
+    void serverErrorsOpenCircuit() {
+        RetryPolicy policy = policy();
+        assertThrows(HttpStatusException.class, () -> policy.execute("test", URL, () -> {
+            throw new HttpStatusException(503, "unavailable");
+        }));
+        assertEquals(1, policy.getTrips());
+        assertThrows(RetryPolicy.CircuitOpenException.class, () -> call(policy));
+    }
+
+    @Test
+    void connectionFailuresOpenCircuit() {
+        RetryPolicy policy = policy();
+        assertThrows(ConnectException.class, () -> policy.execute("test", URL, () -> {
+            throw new ConnectException("refused");
+        }));
+        assertEquals(1, policy.getTrips());
+        assertThrows(RetryPolicy.CircuitOpenException.class, () -> call(policy));
+    }
+
+    private static String call(RetryPolicy policy) throws IOException {
+        return policy.execute("test", URL, () -> "ok");
+    }
+}
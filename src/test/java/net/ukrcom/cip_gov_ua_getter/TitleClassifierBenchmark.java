@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Мікробенчмарк {@link TitleClassifier} проти попереднього підходу, де для
+ * кожного заголовка й кожного ключового слова викликався
+ * title.matches(".*" + keyword + ".*"). Перед вимірюванням перевіряє, що
+ * обидва підходи дають однакові результати.
+ *
+ * Запуск після mvn package: java -cp
+ * target/test-classes:target/cip_gov_ua_getter-3.2.0-all.jar
+ * net.ukrcom.cip_gov_ua_getter.TitleClassifierBenchmark [кількість заголовків]
+ *
+ * @author olden
+ */
+public class TitleClassifierBenchmark {
+
+    private static final String[] TEMPLATES = {
+        "Розпорядження про блокування доменних імен №%d",
+        "Розпорядження про розблокування доменних імен №%d",
+        "Рішення про обмеження доступу до інформаційних ресурсів №%d",
+        "Щодо припинення тимчасового обмеження доступу №%d",
+        "Розпорядження про реалізацію санкційних обмежувальних заходів №%d",
+        "Новини центру: семінар з кібербезпеки №%d",
+        "Оголошення про проведення конкурсу №%d"
+    };
+    private static final int ROUNDS = 5;
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        TitleClassifier classifier = new TitleClassifier(new Properties());
+        String[] ban = "блокування|обмеження доступу|реалізацію.*обмежувальних".split("\\|");
+        String[] unban = "розблокування|припинення тимчасового".split("\\|");
+
+        Random random = new Random(1);
+        String[] titles = new String[count];
+        for (int i = 0; i < count; i++) {
+            titles[i] = String.format(TEMPLATES[random.nextInt(TEMPLATES.length)], i);
+        }
+
+        for (String title : titles) {
+            if (legacy(title, ban, unban) != classifier.classify(title)) {
+                throw new IllegalStateException("Results differ for title: " + title);
+            }
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String title : titles) {
+                sink += legacy(title, ban, unban).ordinal();
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String title : titles) {
+                sink += classifier.classify(title).ordinal();
+            }
+            long classifierNanos = System.nanoTime() - start;
+
+            System.out.printf("Round %d: matches() %d ns/title, TitleClassifier %d ns/title, x%.1f%n",
+                    round, legacyNanos / count, classifierNanos / count, (double) legacyNanos / classifierNanos);
+        }
+    }
+
+    static TitleClassifier.Category legacy(String title, String[] ban, String[] unban) {
+        boolean relevant = false;
+        for (String keyword : ban) {
+            if (title.matches(".*" + keyword + ".*")) {
+                relevant = true;
+                break;
+            }
+        }
+        if (!relevant) {
+            return TitleClassifier.Category.IRRELEVANT;
+        }
+        for (String keyword : unban) {
+            if (title.matches(".*" + keyword + ".*")) {
+                return TitleClassifier.Category.UNBAN;
+            }
+        }
+        return TitleClassifier.Category.BAN;
+    }
+}
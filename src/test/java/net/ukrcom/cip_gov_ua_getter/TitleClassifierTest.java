@@ -0,0 +1,84 @@
+/*
+ * Copyright 2025 olden
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ukrcom.cip_gov_ua_getter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Перевіряє, що {@link TitleClassifier} класифікує заголовки так само, як
+ * попередній підхід з title.matches(".*" + keyword + ".*").
+ *
+ * @author olden
+ */
+class TitleClassifierTest {
+
+    private static final String[] FRAGMENTS = {
+        "Розпорядження", "про", "блокування", "розблокування", "доменних імен",
+        "обмеження доступу", "реалізацію", "санкційних", "обмежувальних", "заходів",
+        "припинення тимчасового", "щодо", "семінар", "блок", "розблок", "№42", " ", ""
+    };
+
+    @Test
+    void defaultKeywordsMatchLegacy() {
+        TitleClassifier classifier = new TitleClassifier(new Properties());
+        String[] ban = "блокування|обмеження доступу|реалізацію.*обмежувальних".split("\\|");
+        String[] unban = "розблокування|припинення тимчасового".split("\\|");
+        Random random = new Random(15);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder title = new StringBuilder();
+            int parts = random.nextInt(7);
+            for (int j = 0; j < parts; j++) {
+                title.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]).append(random.nextBoolean() ? " " : "");
+            }
+            String t = title.toString();
+            assertEquals(TitleClassifierBenchmark.legacy(t, ban, unban), classifier.classify(t), t);
+        }
+    }
+
+    @Test
+    void overlappingLiteralKeywordsMatchLegacy() {
+        // Літерали, що перекриваються й вкладені одне в одне, перевіряють переходи за fail-посиланнями
+        String[] ban = {"ab", "bab", "abc", "c", "a.c"};
+        String[] unban = {"bc", "abab", "ca", "b+a"};
+        TitleClassifier classifier = new TitleClassifier(ban, unban);
+        Random random = new Random(15);
+        for (int i = 0; i < 50_000; i++) {
+            char[] title = new char[random.nextInt(10)];
+            for (int j = 0; j < title.length; j++) {
+                title[j] = "abcx".charAt(random.nextInt(4));
+            }
+            String t = new String(title);
+            assertEquals(TitleClassifierBenchmark.legacy(t, ban, unban), classifier.classify(t), t);
+        }
+    }
+
+    @Test
+    void classifiesTypicalTitles() {
+        TitleClassifier classifier = new TitleClassifier(new Properties());
+        assertEquals(TitleClassifier.Category.BAN,
+                classifier.classify("Розпорядження про блокування доменних імен №1"));
+        assertEquals(TitleClassifier.Category.UNBAN,
+                classifier.classify("Розпорядження про розблокування доменних імен №2"));
+        assertEquals(TitleClassifier.Category.BAN,
+                classifier.classify("Розпорядження про реалізацію санкційних обмежувальних заходів"));
+        assertEquals(TitleClassifier.Category.IRRELEVANT,
+                classifier.classify("Оголошення про проведення конкурсу"));
+    }
+}